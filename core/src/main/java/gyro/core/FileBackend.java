@@ -49,6 +49,16 @@ public abstract class FileBackend {
 
     public abstract OutputStream openOutput(String file) throws Exception;
 
+    /**
+     * Opens the given {@code file} for appending, creating it if it doesn't
+     * exist.
+     *
+     * @return {@code null} if this backend doesn't support appending.
+     */
+    public OutputStream openAppendOutput(String file) throws Exception {
+        return null;
+    }
+
     public abstract void delete(String file) throws Exception;
 
 }
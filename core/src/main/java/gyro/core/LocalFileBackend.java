@@ -24,6 +24,7 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.stream.Stream;
 
 public class LocalFileBackend extends FileBackend {
@@ -73,6 +74,15 @@ public class LocalFileBackend extends FileBackend {
         };
     }
 
+    @Override
+    public OutputStream openAppendOutput(String file) throws IOException {
+        Path finalFile = rootDirectory.resolve(file);
+
+        Files.createDirectories(finalFile.getParent());
+
+        return Files.newOutputStream(finalFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
     @Override
     public void delete(String file) throws IOException {
         Files.deleteIfExists(rootDirectory.resolve(file));
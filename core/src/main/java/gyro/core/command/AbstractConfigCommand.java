@@ -19,11 +19,19 @@ package gyro.core.command;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -31,16 +39,23 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import gyro.core.GyroCore;
 import gyro.core.GyroException;
 import gyro.core.GyroUI;
 import gyro.core.LocalFileBackend;
+import gyro.core.Reflections;
 import gyro.core.auth.Credentials;
 import gyro.core.auth.CredentialsSettings;
 import gyro.core.diff.ChangeProcessor;
 import gyro.core.diff.ChangeSettings;
+import gyro.core.reference.ResourceReference;
+import gyro.core.resource.Diffable;
+import gyro.core.resource.DiffableField;
 import gyro.core.resource.DiffableInternals;
 import gyro.core.resource.DiffableType;
 import gyro.core.resource.Resource;
@@ -53,12 +68,24 @@ import io.airlift.airline.Option;
 
 public abstract class AbstractConfigCommand extends AbstractCommand {
 
+    private static final int REFRESH_BATCH_SIZE = 100;
+    private static final Pattern DURATION_PATTERN = Pattern.compile("(\\d+)([smhd])?");
+
     @Option(name = "--skip-refresh")
     public boolean skipRefresh;
 
     @Option(name = "--test")
     private boolean test;
 
+    @Option(name = "--parallelism", description = "Maximum number of resources to diff or change concurrently")
+    private int parallelism = 1;
+
+    @Option(name = "--refresh-parallelism", description = "Maximum number of resources to refresh concurrently")
+    private int refreshParallelism = 16;
+
+    @Option(name = "--refresh-max-age", description = "Skip refreshing resources that were refreshed within the given duration, such as 30s, 10m, or 1h")
+    private String refreshMaxAge;
+
     @Arguments
     private List<String> files;
 
@@ -73,6 +100,16 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
                 "Not a gyro project directory, use 'gyro init <plugins>...' to create one. See 'gyro help init' for detailed usage.");
         }
 
+        if (parallelism < 1) {
+            throw new GyroException("--parallelism must be at least 1!");
+        }
+
+        if (refreshParallelism < 1) {
+            throw new GyroException("--refresh-parallelism must be at least 1!");
+        }
+
+        Long maxAge = refreshMaxAge != null ? parseDuration(refreshMaxAge) : null;
+
         Set<String> loadFiles;
 
         if (files == null) {
@@ -121,17 +158,77 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
                 .forEach(Credentials::refresh);
 
             if (!skipRefresh) {
-                refreshResources(current);
+                refreshResources(current, pending, maxAge);
             }
         }
         GyroCore.ui().setAuditPending(true);
 
         pending.evaluate();
         pending.validate();
-        doExecute(current, pending, new State(current, pending, test));
+        doExecute(current, pending, new State(current, pending, test, parallelism));
+    }
+
+    static long parseDuration(String duration) {
+        Matcher matcher = DURATION_PATTERN.matcher(duration.trim());
+
+        if (!matcher.matches()) {
+            throw new GyroException("--refresh-max-age must be a duration such as 30s, 10m, or 1h!");
+        }
+
+        long amount = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2);
+
+        switch (unit != null ? unit : "s") {
+            case "m":
+                return TimeUnit.MINUTES.toMillis(amount);
+
+            case "h":
+                return TimeUnit.HOURS.toMillis(amount);
+
+            case "d":
+                return TimeUnit.DAYS.toMillis(amount);
+
+            default:
+                return TimeUnit.SECONDS.toMillis(amount);
+        }
+    }
+
+    /**
+     * Groups the given {@code resources} into batches of at most
+     * {@code batchSize} resources of the same type if the type supports
+     * {@code refreshAll}, or into batches of one otherwise.
+     */
+    static List<List<Resource>> toBatches(List<Resource> resources, int batchSize) {
+        List<List<Resource>> batches = new ArrayList<>();
+        Map<DiffableType<Resource>, List<Resource>> resourcesByType = new LinkedHashMap<>();
+
+        for (Resource resource : resources) {
+            DiffableType<Resource> type = DiffableType.getInstance(resource);
+
+            if (type.isRefreshAllSupported()) {
+                resourcesByType.computeIfAbsent(type, t -> new ArrayList<>()).add(resource);
+
+            } else {
+                batches.add(Collections.singletonList(resource));
+            }
+        }
+
+        for (List<Resource> typeResources : resourcesByType.values()) {
+            for (int i = 0, size = typeResources.size(); i < size; i += batchSize) {
+                batches.add(typeResources.subList(i, Math.min(i + batchSize, size)));
+            }
+        }
+
+        return batches;
     }
 
-    private void refreshResources(RootScope scope) {
+    /**
+     * @param pending Configuration that's used to find the resources that
+     * the load files reference.
+     * @param maxAge Resources refreshed within this many milliseconds are
+     * skipped. {@code null} to refresh all resources.
+     */
+    private void refreshResources(RootScope scope, RootScope pending, Long maxAge) {
         ScheduledExecutorService messageService = Executors.newSingleThreadScheduledExecutor();
         GyroUI ui = GyroCore.ui();
         AtomicInteger started = new AtomicInteger();
@@ -141,8 +238,24 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
             ui.replace("@|magenta ⟳ Refreshing resources:|@ %s started, %s done", started.get(), done.get());
         }, 0, 100, TimeUnit.MILLISECONDS);
 
-        ExecutorService refreshService = Executors.newCachedThreadPool();
-        List<Refresh> refreshes = new ArrayList<>();
+        ExecutorService refreshService = Executors.newFixedThreadPool(refreshParallelism);
+        Map<String, RefreshRateLimiter> rateLimiters = scope.getSettings(RefreshSettings.class).getRateLimiters();
+        List<Resource> refreshable = new ArrayList<>();
+        RefreshCache cache = maxAge != null ? RefreshCache.load(scope) : null;
+        long now = System.currentTimeMillis();
+        Set<String> keys = new HashSet<>();
+        Map<Resource, String> hashes = new HashMap<>();
+        Set<Resource> unchanged = ConcurrentHashMap.newKeySet();
+        int skipped = 0;
+
+        // Only refresh what the load files need when they're given.
+        Set<String> loadFiles = scope.getLoadFiles();
+        Set<Resource> targets = loadFiles != null && !loadFiles.isEmpty()
+            ? findDependencies(
+                scope.findResourcesIn(loadFiles),
+                pending.findReferencesIn(loadFiles),
+                scope.findResources())
+            : null;
 
         for (FileScope fileScope : scope.getFileScopes()) {
             for (Object value : fileScope.values()) {
@@ -152,52 +265,122 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
 
                 Resource resource = (Resource) value;
 
+                if (cache != null) {
+                    keys.add(resource.primaryKey());
+                }
+
+                if (targets != null && !targets.contains(resource)) {
+                    continue;
+                }
+
+                if (cache != null) {
+                    String hash = RefreshCache.hash(resource);
+
+                    if (cache.isFresh(resource, hash, maxAge, now)) {
+                        ++skipped;
+                        continue;
+                    }
+
+                    hashes.put(resource, hash);
+                }
+
+                refreshable.add(resource);
+            }
+        }
+
+        List<Refresh> refreshes = new ArrayList<>();
+
+        for (List<Resource> resources : toBatches(refreshable, REFRESH_BATCH_SIZE)) {
+            Resource first = resources.get(0);
+            DiffableType<Resource> type = DiffableType.getInstance(first);
+            Map<Resource, List<ChangeProcessor>> processorsByResource = new HashMap<>();
+
+            for (Resource resource : resources) {
                 List<ChangeProcessor> processors = new ArrayList<>();
                 for (Scope s = DiffableInternals.getScope(resource); s != null; s = s.getParent()) {
                     processors.addAll(0, s.getSettings(ChangeSettings.class).getProcessors());
                 }
 
-                refreshes.add(new Refresh(resource, refreshService.submit(() -> {
-                    started.incrementAndGet();
+                processorsByResource.put(resource, processors);
+            }
+
+            RefreshRateLimiter rateLimiter = rateLimiters.get(Reflections.getNamespaceOptional(first.getClass())
+                .orElse(""));
+
+            refreshes.add(new Refresh(resources, refreshService.submit(() -> {
+
+                // One token per refresh call, even for a whole batch.
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
+
+                started.addAndGet(resources.size());
+
+                Map<Resource, Object> snapshots = new HashMap<>();
+
+                if (cache != null) {
+                    resources.forEach(r -> snapshots.put(r, RefreshCache.snapshot(r)));
+                }
 
-                    for (ChangeProcessor processor : processors) {
+                for (Resource resource : resources) {
+                    for (ChangeProcessor processor : processorsByResource.get(resource)) {
                         processor.beforeRefresh(ui, resource);
                     }
+                }
+
+                Set<Resource> kept;
+
+                if (type.isRefreshAllSupported()) {
+                    kept = new HashSet<>(type.refreshAll(resources));
 
-                    boolean keep = resource.refresh();
+                } else {
+                    kept = first.refresh() ? Collections.singleton(first) : Collections.emptySet();
+                }
 
-                    for (ChangeProcessor processor : processors) {
+                for (Resource resource : resources) {
+                    for (ChangeProcessor processor : processorsByResource.get(resource)) {
                         processor.afterRefresh(ui, resource);
                     }
+                }
 
-                    if (keep) {
+                for (Resource resource : resources) {
+                    if (kept.contains(resource)) {
                         DiffableInternals.getModifications(resource).forEach(m -> m.refresh(resource));
+
+                        if (cache != null && snapshots.get(resource).equals(RefreshCache.snapshot(resource))) {
+                            unchanged.add(resource);
+                        }
                     }
+                }
+
+                done.addAndGet(resources.size());
 
-                    done.incrementAndGet();
+                List<Resource> removed = new ArrayList<>();
 
-                    if (keep) {
+                for (Resource resource : resources) {
+                    if (kept.contains(resource)) {
                         DiffableInternals.disconnect(resource);
                         DiffableInternals.update(resource);
-                        return false;
 
                     } else {
-                        return true;
+                        removed.add(resource);
                     }
-                })));
-            }
+                }
+
+                return removed;
+            })));
         }
 
         refreshService.shutdown();
 
         for (Refresh refresh : refreshes) {
-            Resource resource = refresh.resource;
-            String typeName = DiffableType.getInstance(resource).getName();
-            String name = DiffableInternals.getName(resource);
-
             try {
-                if (refresh.future.get()) {
-                    ui.replace("@|magenta - Removing from state:|@ %s %s\n", typeName, name);
+                for (Resource resource : refresh.future.get()) {
+                    ui.replace(
+                        "@|magenta - Removing from state:|@ %s %s\n",
+                        DiffableType.getInstance(resource).getName(),
+                        DiffableInternals.getName(resource));
+
                     scope.getFileScopes().forEach(s -> s.remove(resource.primaryKey()));
                 }
 
@@ -207,8 +390,13 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
 
                 ui.write("\n");
 
+                Resource resource = refresh.resources.get(0);
+                String typeName = DiffableType.getInstance(resource).getName();
+
                 throw new GyroException(
-                    String.format("Can't refresh @|bold %s %s|@ resource!", typeName, name),
+                    refresh.resources.size() > 1
+                        ? String.format("Can't refresh @|bold %s|@ resources!", typeName)
+                        : String.format("Can't refresh @|bold %s %s|@ resource!", typeName, DiffableInternals.getName(resource)),
                     error.getCause());
 
             } catch (InterruptedException error) {
@@ -218,16 +406,92 @@ public abstract class AbstractConfigCommand extends AbstractCommand {
         }
 
         messageService.shutdown();
-        ui.replace("@|magenta ⟳ Refreshed resources:|@ %s\n", refreshes.size());
+
+        if (cache != null) {
+            for (Resource resource : hashes.keySet()) {
+                if (unchanged.contains(resource)) {
+                    cache.put(resource, hashes.get(resource), now);
+
+                } else {
+                    cache.remove(resource);
+                }
+            }
+
+            cache.save(keys);
+            ui.replace("@|magenta ⟳ Refreshed resources:|@ %s (%s refreshed recently)\n", started.get(), skipped);
+
+        } else {
+            ui.replace("@|magenta ⟳ Refreshed resources:|@ %s\n", started.get());
+        }
+    }
+
+    /**
+     * Returns the given {@code resources}, the ones in {@code allResources}
+     * that match the given {@code references}, and all the resources that
+     * they reference, directly or indirectly.
+     */
+    static Set<Resource> findDependencies(
+        Collection<Resource> resources,
+        Collection<ResourceReference> references,
+        Collection<Resource> allResources) {
+
+        Set<Resource> dependencies = new HashSet<>();
+        Deque<Resource> queue = new ArrayDeque<>(resources);
+
+        // The configuration can reference resources that the state doesn't
+        // yet, such as when a new reference is added.
+        for (Resource resource : allResources) {
+            if (references.stream().anyMatch(r -> r.matches(resource))) {
+                queue.add(resource);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            Resource resource = queue.pop();
+
+            if (dependencies.add(resource)) {
+                addReferences(resource, queue);
+            }
+        }
+
+        return dependencies;
+    }
+
+    private static void addReferences(Diffable diffable, Deque<Resource> queue) {
+        for (DiffableField field : DiffableType.getInstance(diffable).getFields()) {
+            Object value = field.getValue(diffable);
+
+            if (field.shouldBeDiffed()) {
+                (value instanceof Collection ? ((Collection<?>) value).stream() : Stream.of(value))
+                    .filter(Diffable.class::isInstance)
+                    .map(Diffable.class::cast)
+                    .forEach(d -> addReferences(d, queue));
+
+            } else {
+                addReferencedValue(value, queue);
+            }
+        }
+    }
+
+    private static void addReferencedValue(Object value, Deque<Resource> queue) {
+        if (value instanceof Resource) {
+            queue.push((Resource) value);
+
+        } else if (value instanceof Collection) {
+            ((Collection<?>) value).forEach(v -> addReferencedValue(v, queue));
+
+        } else if (value instanceof Map) {
+            ((Map<?, ?>) value).values().forEach(v -> addReferencedValue(v, queue));
+        }
     }
 
     private static class Refresh {
 
-        public final Resource resource;
-        public final Future<Boolean> future;
+        public final List<Resource> resources;
+        public final Future<List<Resource>> future;
 
-        public Refresh(Resource resource, Future<Boolean> future) {
-            this.resource = resource;
+        public Refresh(List<Resource> resources, Future<List<Resource>> future) {
+            this.resources = resources;
             this.future = future;
         }
 
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.command;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.psddev.dari.util.IoUtils;
+import com.psddev.dari.util.ObjectUtils;
+import gyro.core.GyroException;
+import gyro.core.GyroInputStream;
+import gyro.core.GyroOutputStream;
+import gyro.core.resource.Diffable;
+import gyro.core.resource.DiffableField;
+import gyro.core.resource.DiffableInternals;
+import gyro.core.resource.DiffableType;
+import gyro.core.resource.Resource;
+import gyro.core.scope.DiffableScope;
+import gyro.core.scope.RootScope;
+import gyro.lang.ast.NodePrinter;
+import gyro.lang.ast.block.BlockNode;
+import gyro.util.Bug;
+
+/**
+ * When each resource in the state was last refreshed, stored next to the
+ * state files so that {@code --refresh-max-age} can skip recent ones.
+ *
+ * <p>An entry is only kept while the resource's state matches what the
+ * refresh found. Each entry records a hash of the resource's state, and a
+ * refresh that changes the resource drops the entry, since the refreshed
+ * values are only saved if the resource is changed later.</p>
+ */
+class RefreshCache {
+
+    public static final String FILE = "refresh-cache.json";
+
+    private final RootScope root;
+    private final Map<String, Map<String, Object>> entries;
+
+    private RefreshCache(RootScope root, Map<String, Map<String, Object>> entries) {
+        this.root = root;
+        this.entries = entries;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static RefreshCache load(RootScope root) {
+        Map<String, Map<String, Object>> entries = null;
+
+        try (GyroInputStream input = root.openInput(FILE)) {
+            entries = (Map<String, Map<String, Object>>) ObjectUtils.fromJson(IoUtils.toString(input, StandardCharsets.UTF_8));
+
+        } catch (GyroException error) {
+            // Not refreshed with --refresh-max-age yet.
+
+        } catch (IOException | RuntimeException error) {
+            // Cache is only an optimization, so start over if it's corrupt.
+        }
+
+        return new RefreshCache(root, entries != null ? new HashMap<>(entries) : new HashMap<>());
+    }
+
+    /**
+     * Returns the hash of the given {@code resource}'s state, or
+     * {@code null} if it's not available. Must be called before the
+     * resource is refreshed.
+     */
+    public static String hash(Resource resource) {
+        DiffableScope scope = DiffableInternals.getScope(resource);
+        BlockNode block = scope != null ? scope.getBlock() : null;
+
+        if (block == null) {
+            return null;
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            return String.format(
+                "%064x",
+                new BigInteger(1, digest.digest(NodePrinter.toString(block).getBytes(StandardCharsets.UTF_8))));
+
+        } catch (NoSuchAlgorithmException error) {
+            throw new Bug(error);
+        }
+    }
+
+    /**
+     * Returns a copy of the field values of the given {@code diffable} and
+     * its subresources that can be compared before and after a refresh.
+     */
+    public static Object snapshot(Diffable diffable) {
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        for (DiffableField field : DiffableType.getInstance(diffable).getFields()) {
+            Object value = field.getValue(diffable);
+
+            if (field.shouldBeDiffed()) {
+                if (value instanceof Collection) {
+                    List<Object> snapshots = new ArrayList<>();
+
+                    for (Object item : (Collection<?>) value) {
+                        snapshots.add(item instanceof Diffable ? snapshot((Diffable) item) : item);
+                    }
+
+                    value = snapshots;
+
+                } else if (value instanceof Diffable) {
+                    value = snapshot((Diffable) value);
+                }
+
+            } else if (value instanceof List) {
+                value = new ArrayList<>((List<?>) value);
+
+            } else if (value instanceof Set) {
+                value = new HashSet<>((Set<?>) value);
+
+            } else if (value instanceof Map) {
+                value = new HashMap<>((Map<?, ?>) value);
+            }
+
+            values.put(field.getName(), value);
+        }
+
+        return values;
+    }
+
+    public boolean isFresh(Resource resource, String hash, long maxAge, long now) {
+        Map<String, Object> entry = entries.get(resource.primaryKey());
+
+        if (entry == null || hash == null || !hash.equals(entry.get("hash"))) {
+            return false;
+        }
+
+        Long refreshed = ObjectUtils.to(Long.class, entry.get("refreshed"));
+
+        return refreshed != null && refreshed <= now && now - refreshed <= maxAge;
+    }
+
+    public void put(Resource resource, String hash, long refreshed) {
+        if (hash == null) {
+            remove(resource);
+
+        } else {
+            Map<String, Object> entry = new LinkedHashMap<>();
+
+            entry.put("hash", hash);
+            entry.put("refreshed", refreshed);
+            entries.put(resource.primaryKey(), entry);
+        }
+    }
+
+    public void remove(Resource resource) {
+        entries.remove(resource.primaryKey());
+    }
+
+    /**
+     * @param keys Primary keys of all the resources in the state.
+     */
+    public void save(Set<String> keys) {
+        entries.keySet().retainAll(keys);
+
+        try (GyroOutputStream output = root.openOutput(FILE)) {
+            output.write(ObjectUtils.toJson(entries).getBytes(StandardCharsets.UTF_8));
+
+        } catch (IOException error) {
+            throw new GyroException(error);
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.command;
+
+import gyro.core.GyroException;
+import gyro.core.Type;
+import gyro.core.directive.DirectiveProcessor;
+import gyro.core.scope.RootScope;
+import gyro.lang.ast.block.DirectiveNode;
+
+/**
+ * Limits how quickly the resources in a namespace are refreshed, for
+ * example {@code @refresh-rate-limit: 'aws' 20 -burst 40}.
+ *
+ * <p>The rate is in refresh calls per second. A batch of resources
+ * refreshed together counts as one call.</p>
+ */
+@Type("refresh-rate-limit")
+public class RefreshRateLimitDirectiveProcessor extends DirectiveProcessor<RootScope> {
+
+    @Override
+    public void process(RootScope scope, DirectiveNode node) {
+        validateArguments(node, 2, 2);
+        validateOptionArguments(node, "burst", 0, 1);
+
+        String namespace = getArgument(scope, node, String.class, 0);
+        Double rate = getArgument(scope, node, Double.class, 1);
+        Double burst = getOptionArgument(scope, node, "burst", Double.class, 0);
+
+        if (rate == null || rate <= 0) {
+            throw new GyroException(node, "@|bold @refresh-rate-limit|@ rate must be greater than 0!");
+        }
+
+        if (burst == null) {
+            burst = Math.max(1.0, rate);
+
+        } else if (burst < 1) {
+            throw new GyroException(node, "@|bold @refresh-rate-limit -burst|@ must be at least 1!");
+        }
+
+        scope.getSettings(RefreshSettings.class)
+            .getRateLimiters()
+            .put(namespace, new RefreshRateLimiter(rate, burst));
+    }
+
+}
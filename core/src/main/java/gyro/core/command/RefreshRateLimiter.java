@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.command;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that limits how quickly resources in a namespace are
+ * refreshed.
+ *
+ * <p>Each refresh call takes one token, so a batch of resources refreshed
+ * together through {@code refreshAll} counts the same as a single
+ * resource, since it's a single request to the provider.</p>
+ */
+public class RefreshRateLimiter {
+
+    private final double rate;
+    private final double burst;
+    private final LongSupplier clock;
+    private double tokens;
+    private long last;
+
+    /**
+     * @param rate Number of refreshes allowed per second.
+     * @param burst Maximum number of refreshes allowed at once.
+     */
+    public RefreshRateLimiter(double rate, double burst) {
+        this(rate, burst, System::nanoTime);
+    }
+
+    /**
+     * @param clock Returns the current time in nanoseconds.
+     */
+    RefreshRateLimiter(double rate, double burst, LongSupplier clock) {
+        this.rate = rate;
+        this.burst = burst;
+        this.clock = clock;
+        this.tokens = burst;
+        this.last = clock.getAsLong();
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public double getBurst() {
+        return burst;
+    }
+
+    /**
+     * Blocks until a refresh is allowed.
+     */
+    public void acquire() throws InterruptedException {
+        long wait = reserve();
+
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    // Takes a token, possibly from the future, and returns how long the
+    // caller needs to wait before it's actually available.
+    synchronized long reserve() {
+        long now = clock.getAsLong();
+
+        tokens = Math.min(burst, tokens + (now - last) * rate / TimeUnit.SECONDS.toNanos(1));
+        last = now;
+        tokens -= 1;
+
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+}
@@ -16,23 +16,54 @@
 
 package gyro.core.command;
 
+import java.nio.file.Paths;
+
 import gyro.core.GyroCore;
+import gyro.core.GyroException;
 import gyro.core.GyroUI;
 import gyro.core.diff.Diff;
+import gyro.core.diff.Plan;
 import gyro.core.diff.Retry;
 import gyro.core.scope.RootScope;
 import gyro.core.scope.State;
 import io.airlift.airline.Command;
+import io.airlift.airline.Option;
 
 @Command(name = "up", description = "Updates all resources to match the configuration.")
 public class UpCommand extends AbstractConfigCommand {
 
+    @Option(name = "--plan-out", description = "Save the changes to the given file instead of applying them")
+    private String planOut;
+
+    @Option(name = "--plan-in", description = "Apply the changes saved by --plan-out without asking for confirmation")
+    private String planIn;
+
     private boolean auditStarted;
 
+    @Override
+    protected void doExecute() throws Exception {
+        if (planIn != null && planOut != null) {
+            throw new GyroException("--plan-in and --plan-out can't be used together!");
+        }
+
+        super.doExecute();
+    }
+
     @Override
     public void doExecute(RootScope current, RootScope pending, State state) throws Exception {
         VersionCommand.printUpdateVersion();
         GyroUI ui = GyroCore.ui();
+        Plan plan = null;
+
+        if (planIn != null) {
+            plan = Plan.read(Paths.get(planIn));
+
+            if (!plan.getState().equals(Plan.fingerprint(current))) {
+                throw new GyroException(String.format(
+                    "State has changed since the plan in @|bold %s|@ was saved!",
+                    planIn));
+            }
+        }
 
         ui.write("\n@|bold,white Looking for changes...\n\n|@");
 
@@ -41,14 +72,39 @@ public class UpCommand extends AbstractConfigCommand {
                 current.findResourcesIn(current.getLoadFiles()),
                 pending.findResourcesIn(pending.getLoadFiles()));
 
-            diff.diff();
+            diff.diff(state.getParallelism());
+
+            boolean hasChanges = diff.write(ui);
+
+            // Planning doesn't write the state, so --plan-in refreshes the
+            // same state files and must find the same changes.
+            if (planOut != null) {
+                Plan.of(diff, Plan.fingerprint(current)).write(Paths.get(planOut));
+                ui.write("\n@|bold,green Saved the plan to %s.|@\n\n", planOut);
+                break;
+            }
+
+            boolean planned = false;
+
+            // Changes after a workflow aren't part of the plan and need to
+            // be confirmed as usual.
+            if (plan != null) {
+                if (!plan.hasSameChanges(Plan.of(diff, plan.getState()))) {
+                    throw new GyroException(String.format(
+                        "Changes no longer match the plan in @|bold %s|@!",
+                        planIn));
+                }
+
+                plan = null;
+                planned = true;
+            }
 
-            if (!diff.write(ui)) {
+            if (!hasChanges) {
                 ui.write("\n@|bold,green No changes.|@\n\n");
                 break;
             }
 
-            if (!ui.readBoolean(Boolean.FALSE, "\nAre you sure you want to change resources?")) {
+            if (!planned && !ui.readBoolean(Boolean.FALSE, "\nAre you sure you want to change resources?")) {
                 break;
             }
 
@@ -79,10 +135,11 @@ public class UpCommand extends AbstractConfigCommand {
                 pending.evaluate();
                 pending.validate();
 
-                state = new State(current, pending, state.isTest());
+                state = new State(current, pending, state.isTest(), state.getParallelism());
             }
         }
 
+        state.compact();
         ui.finishAuditors(null, true);
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import gyro.core.GyroUI;
+
+/**
+ * UI for a change that's executing concurrently with others. Its output is
+ * held back until {@link #flush} so that it isn't interleaved with the
+ * output of the other changes.
+ *
+ * <p>Everything that reaches the underlying UI, including the prompts, is
+ * guarded by the given lock.</p>
+ */
+class BufferedGyroUI implements GyroUI {
+
+    private final GyroUI ui;
+    private final Object lock;
+    private final List<Consumer<GyroUI>> writes = new ArrayList<>();
+
+    public BufferedGyroUI(GyroUI ui, Object lock) {
+        this.ui = ui;
+        this.lock = lock;
+    }
+
+    /**
+     * Writes all buffered output to the underlying UI.
+     */
+    public void flush() {
+        synchronized (lock) {
+            writes.forEach(w -> w.accept(ui));
+            writes.clear();
+        }
+    }
+
+    @Override
+    public boolean isVerbose() {
+        return ui.isVerbose();
+    }
+
+    @Override
+    public void setVerbose(boolean verbose) {
+        synchronized (lock) {
+            ui.setVerbose(verbose);
+        }
+    }
+
+    @Override
+    public boolean readBoolean(Boolean defaultValue, String message, Object... arguments) {
+        synchronized (lock) {
+            flush();
+            return ui.readBoolean(defaultValue, message, arguments);
+        }
+    }
+
+    @Override
+    public void readEnter(String message, Object... arguments) {
+        synchronized (lock) {
+            flush();
+            ui.readEnter(message, arguments);
+        }
+    }
+
+    @Override
+    public <E extends Enum<E>> E readNamedOption(E options) {
+        synchronized (lock) {
+            flush();
+            return ui.readNamedOption(options);
+        }
+    }
+
+    @Override
+    public String readPassword(String message, Object... arguments) {
+        synchronized (lock) {
+            flush();
+            return ui.readPassword(message, arguments);
+        }
+    }
+
+    @Override
+    public String readText(String message, Object... arguments) {
+        synchronized (lock) {
+            flush();
+            return ui.readText(message, arguments);
+        }
+    }
+
+    @Override
+    public void indent() {
+        writes.add(GyroUI::indent);
+    }
+
+    @Override
+    public void unindent() {
+        writes.add(GyroUI::unindent);
+    }
+
+    @Override
+    public void write(String message, Object... arguments) {
+        writes.add(u -> u.write(message, arguments));
+    }
+
+    @Override
+    public void replace(String message, Object... arguments) {
+        writes.add(u -> u.replace(message, arguments));
+    }
+
+    @Override
+    public boolean auditPending() {
+        synchronized (lock) {
+            return ui.auditPending();
+        }
+    }
+
+    @Override
+    public void setAuditPending(boolean auditPending) {
+        synchronized (lock) {
+            ui.setAuditPending(auditPending);
+        }
+    }
+
+    @Override
+    public void startAuditors(Map<String, Object> log) {
+        synchronized (lock) {
+            ui.startAuditors(log);
+        }
+    }
+
+    @Override
+    public void finishAuditors(Map<String, Object> log, boolean success) {
+        synchronized (lock) {
+            ui.finishAuditors(log, success);
+        }
+    }
+
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.google.common.collect.Lists;
+import gyro.core.GyroCore;
+import gyro.core.GyroException;
+import gyro.core.GyroUI;
+import gyro.core.reference.ReferenceSettings;
+import gyro.core.reference.ResourceReference;
+import gyro.core.resource.Diffable;
+import gyro.core.resource.DiffableField;
+import gyro.core.resource.DiffableInternals;
+import gyro.core.resource.DiffableType;
+import gyro.core.resource.Resource;
+import gyro.core.scope.DiffableScope;
+import gyro.core.scope.FileScope;
+import gyro.core.scope.State;
+import gyro.lang.ast.block.BlockNode;
+
+/**
+ * Dependency graph of the resource changes within a {@link Diff} that can
+ * be executed concurrently.
+ *
+ * <p>A change depends on the change of its parent resource and on the
+ * changes of all resources that it references, either through its field
+ * values or through the references in its configuration. Deletes use the
+ * reverse of those dependencies.</p>
+ */
+class ChangeGraph {
+
+    private final List<Change> changes = new ArrayList<>();
+    private final Map<Change, Set<Change>> prerequisites = new HashMap<>();
+
+    private ChangeGraph() {
+    }
+
+    public static ChangeGraph forCreateKeepUpdate(Diff diff) {
+        ChangeGraph graph = new ChangeGraph();
+
+        graph.addCreateKeepUpdate(diff, null);
+        graph.addReferences(false);
+        return graph;
+    }
+
+    public static ChangeGraph forDelete(Diff diff) {
+        ChangeGraph graph = new ChangeGraph();
+
+        graph.addDelete(diff, null);
+        graph.addReferences(true);
+        return graph;
+    }
+
+    private void addCreateKeepUpdate(Diff diff, Change parent) {
+        for (Change change : diff.getChanges()) {
+            Change childParent = parent;
+
+            if ((change instanceof Create || change instanceof Keep || change instanceof Update)
+                && change.getDiffable() instanceof Resource) {
+
+                changes.add(change);
+
+                if (parent != null) {
+                    addPrerequisite(change, parent);
+                }
+
+                childParent = change;
+            }
+
+            for (Diff d : change.getDiffs()) {
+                addCreateKeepUpdate(d, childParent);
+            }
+        }
+    }
+
+    private void addDelete(Diff diff, Change parent) {
+        List<Change> diffChanges = diff.getChanges();
+
+        for (ListIterator<Change> j = diffChanges.listIterator(diffChanges.size()); j.hasPrevious(); ) {
+            Change change = j.previous();
+            boolean delete = change instanceof Delete && change.getDiffable() instanceof Resource;
+
+            for (Diff d : change.getDiffs()) {
+                addDelete(d, delete ? change : parent);
+            }
+
+            if (delete) {
+                changes.add(change);
+
+                if (parent != null) {
+                    addPrerequisite(parent, change);
+                }
+            }
+        }
+    }
+
+    private void addPrerequisite(Change change, Change prerequisite) {
+        prerequisites.computeIfAbsent(change, c -> new LinkedHashSet<>()).add(prerequisite);
+    }
+
+    private void addReferences(boolean reverse) {
+        Map<Diffable, Change> changeByDiffable = new HashMap<>();
+        Map<String, List<Change>> changesByType = new HashMap<>();
+
+        for (Change change : changes) {
+            Diffable diffable = change.getDiffable();
+            DiffableType<Diffable> type = DiffableType.getInstance(diffable);
+
+            changeByDiffable.put(diffable, change);
+
+            if (type.isRoot()) {
+                changesByType.computeIfAbsent(type.getName(), t -> new ArrayList<>()).add(change);
+            }
+        }
+
+        for (Change change : changes) {
+            Set<Change> referenced = new LinkedHashSet<>();
+            Diffable diffable = change.getDiffable();
+
+            addFieldReferences(diffable, changeByDiffable, referenced);
+
+            DiffableScope scope = DiffableInternals.getScope(diffable);
+            BlockNode block = scope != null ? scope.getBlock() : null;
+
+            if (block != null) {
+                for (ResourceReference reference : ResourceReference.find(block.getBody())) {
+                    for (Change c : changesByType.getOrDefault(reference.getType(), Collections.emptyList())) {
+                        if (reference.matches((Resource) c.getDiffable())) {
+                            referenced.add(c);
+                        }
+                    }
+                }
+
+                // Variables can hold references to resources that can't be
+                // found without evaluating them, so conservatively depend on
+                // everything defined earlier in the same file.
+                if (ResourceReference.hasIndirect(block.getBody(), n -> isDirect(scope, n))) {
+                    addEarlierInFile(change, reverse, referenced);
+                }
+            }
+
+            referenced.remove(change);
+
+            for (Change r : referenced) {
+                if (reverse) {
+                    addPrerequisite(r, change);
+
+                } else {
+                    addPrerequisite(change, r);
+                }
+            }
+        }
+    }
+
+    private boolean isDirect(DiffableScope scope, String name) {
+        return scope.containsKey(name)
+            || scope.getRootScope().getSettings(ReferenceSettings.class).getResolver(name) != null;
+    }
+
+    // Deletes are in the reverse of the definition order.
+    private void addEarlierInFile(Change change, boolean reverse, Set<Change> referenced) {
+        String file = getFile(change);
+        List<Change> ordered = reverse ? Lists.reverse(changes) : changes;
+
+        for (Change c : ordered) {
+            if (c == change) {
+                break;
+            }
+
+            if (file.equals(getFile(c))) {
+                referenced.add(c);
+            }
+        }
+    }
+
+    private String getFile(Change change) {
+        DiffableScope scope = DiffableInternals.getScope(change.getDiffable());
+        FileScope fileScope = scope != null ? scope.getFileScope() : null;
+
+        return fileScope != null ? fileScope.getFile() : "";
+    }
+
+    private void addFieldReferences(Diffable diffable, Map<Diffable, Change> changeByDiffable, Set<Change> referenced) {
+        for (DiffableField field : DiffableType.getInstance(diffable).getFields()) {
+            Object value = field.getValue(diffable);
+
+            if (field.shouldBeDiffed()) {
+
+                // Subresources have their own changes, but the fields of
+                // other nested diffables belong to this one.
+                forEachItem(value, item -> {
+                    if (item instanceof Diffable && !(item instanceof Resource)) {
+                        addFieldReferences((Diffable) item, changeByDiffable, referenced);
+                    }
+                });
+
+            } else {
+                forEachItem(value, item -> {
+                    if (item instanceof Resource) {
+                        Change change = changeByDiffable.get(item);
+
+                        if (change != null) {
+                            referenced.add(change);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private void forEachItem(Object value, Consumer<Object> consumer) {
+        if (value instanceof Collection) {
+            ((Collection<?>) value).forEach(i -> forEachItem(i, consumer));
+
+        } else if (value instanceof Map) {
+            ((Map<?, ?>) value).values().forEach(v -> forEachItem(v, consumer));
+
+        } else if (value != null) {
+            consumer.accept(value);
+        }
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public Set<Change> getPrerequisites(Change change) {
+        return prerequisites.getOrDefault(change, Collections.emptySet());
+    }
+
+    /**
+     * Executes all changes using at most {@code parallelism} threads, starting
+     * each one as soon as all of its prerequisites are done.
+     *
+     * <p>If a change fails, no new changes are started, the ones that are
+     * already running are allowed to finish, and the first failure is
+     * rethrown.</p>
+     */
+    public void execute(GyroUI ui, State state, int parallelism) {
+        execute(parallelism, change -> {
+            GyroCore.pushUi(ui);
+
+            try {
+                Diff.executeChange(ui, state, change, true);
+
+            } finally {
+                GyroCore.popUi();
+            }
+        });
+    }
+
+    /**
+     * @param executeChange Executes a single change. Nonnull.
+     */
+    void execute(int parallelism, Consumer<Change> executeChange) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        Map<Change, Integer> remaining = new HashMap<>();
+        Map<Change, List<Change>> dependents = new HashMap<>();
+
+        for (Change change : changes) {
+            Set<Change> changePrerequisites = getPrerequisites(change);
+
+            remaining.put(change, changePrerequisites.size());
+            changePrerequisites.forEach(p -> dependents.computeIfAbsent(p, c -> new ArrayList<>()).add(change));
+        }
+
+        Set<Change> unscheduled = new LinkedHashSet<>(changes);
+        Deque<Change> ready = new ArrayDeque<>();
+
+        changes.stream()
+            .filter(c -> remaining.get(c) == 0)
+            .forEach(ready::add);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, changes.size()));
+        CompletionService<Change> completion = new ExecutorCompletionService<>(executor);
+        int running = 0;
+        Throwable failure = null;
+
+        try {
+            while (!unscheduled.isEmpty() || running > 0) {
+                if (failure == null) {
+                    while (!ready.isEmpty()) {
+                        Change change = ready.poll();
+
+                        unscheduled.remove(change);
+                        completion.submit(() -> {
+                            executeChange.accept(change);
+                            return change;
+                        });
+
+                        ++running;
+                    }
+
+                    // Nothing can start because of a reference cycle, so
+                    // fall back to the original order.
+                    if (running == 0 && !unscheduled.isEmpty()) {
+                        ready.add(unscheduled.iterator().next());
+                        continue;
+                    }
+                }
+
+                if (running == 0) {
+                    break;
+                }
+
+                Future<Change> future = completion.take();
+                --running;
+
+                try {
+                    for (Change dependent : dependents.getOrDefault(future.get(), Collections.emptyList())) {
+                        if (remaining.merge(dependent, -1, Integer::sum) == 0 && unscheduled.contains(dependent)) {
+                            ready.add(dependent);
+                        }
+                    }
+
+                } catch (ExecutionException error) {
+                    if (failure == null) {
+                        failure = error.getCause();
+                    }
+                }
+            }
+
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new GyroException("Interrupted while executing changes!", error);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+
+        } else if (failure != null) {
+            throw new GyroException(failure);
+        }
+    }
+
+}
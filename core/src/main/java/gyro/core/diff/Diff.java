@@ -17,6 +17,7 @@
 package gyro.core.diff;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -27,7 +28,12 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import gyro.core.GyroCore;
 import gyro.core.GyroException;
 import gyro.core.GyroUI;
 import gyro.core.resource.Diffable;
@@ -35,6 +41,7 @@ import gyro.core.resource.DiffableField;
 import gyro.core.resource.DiffableInternals;
 import gyro.core.resource.DiffableType;
 import gyro.core.resource.Resource;
+import gyro.core.scope.DiffableScope;
 import gyro.core.scope.Scope;
 import gyro.core.scope.State;
 
@@ -75,20 +82,36 @@ public class Diff {
     }
 
     public void diff() {
+        diff(1);
+    }
+
+    /**
+     * Finds the changes between the current and the pending diffables,
+     * diffing up to {@code parallelism} pending diffables at the same time.
+     *
+     * <p>The order of the changes is the same regardless of
+     * {@code parallelism}.</p>
+     */
+    public void diff(int parallelism) {
         Map<String, Diffable> currentDiffables = this.currentDiffables.stream().collect(
             LinkedHashMap::new,
             (map, r) -> map.put(r.primaryKey(), r),
             Map::putAll
         );
 
-        for (Diffable pendingDiffable : pendingDiffables) {
-            DiffableInternals.reevaluate(pendingDiffable);
+        if (parallelism > 1 && pendingDiffables.size() > 1) {
+            diffConcurrently(currentDiffables, parallelism);
 
-            Diffable currentDiffable = currentDiffables.remove(pendingDiffable.primaryKey());
+        } else {
+            for (Diffable pendingDiffable : pendingDiffables) {
+                reevaluate(pendingDiffable);
 
-            changes.add(currentDiffable == null
-                ? newCreate(pendingDiffable)
-                : newUpdate(currentDiffable, pendingDiffable));
+                Diffable currentDiffable = currentDiffables.remove(pendingDiffable.primaryKey());
+
+                changes.add(currentDiffable == null
+                    ? newCreate(pendingDiffable)
+                    : newUpdate(currentDiffable, pendingDiffable));
+            }
         }
 
         for (Diffable resource : currentDiffables.values()) {
@@ -96,6 +119,85 @@ public class Diff {
         }
     }
 
+    private void diffConcurrently(Map<String, Diffable> currentDiffables, int parallelism) {
+        List<Callable<Change>> tasks = new ArrayList<>();
+        GyroUI ui = GyroCore.ui();
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+        // Reevaluation may change the primary keys, so it has to be done
+        // before the current diffables can be matched up.
+        for (Diffable pendingDiffable : pendingDiffables) {
+            reevaluate(pendingDiffable);
+
+            Diffable currentDiffable = currentDiffables.remove(pendingDiffable.primaryKey());
+
+            tasks.add(() -> {
+                Thread thread = Thread.currentThread();
+                ClassLoader oldLoader = thread.getContextClassLoader();
+
+                GyroCore.pushUi(ui);
+                thread.setContextClassLoader(loader);
+
+                try {
+                    return currentDiffable == null
+                        ? newCreate(pendingDiffable)
+                        : newUpdate(currentDiffable, pendingDiffable);
+
+                } finally {
+                    thread.setContextClassLoader(oldLoader);
+                    GyroCore.popUi();
+                }
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, tasks.size()));
+
+        try {
+            for (Future<Change> future : pool.invokeAll(tasks)) {
+                changes.add(future.get());
+            }
+
+        } catch (ExecutionException error) {
+            Throwable cause = error.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+
+            } else {
+                throw new GyroException(cause);
+            }
+
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new GyroException("Interrupted while looking for changes!", error);
+
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Evaluator isn't thread-safe, so diffs and changes that run
+    // concurrently must take turns reevaluating and writing their output
+    // through this lock.
+    private static Object getLock(Diffable diffable) {
+        DiffableScope scope = DiffableInternals.getScope(diffable);
+
+        return scope != null ? scope.getRootScope() : diffable;
+    }
+
+    private static void reevaluate(Diffable diffable) {
+        if (DiffableInternals.getScope(diffable) == null) {
+            return;
+        }
+
+        synchronized (getLock(diffable)) {
+            DiffableInternals.reevaluate(diffable);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private Change newCreate(Diffable diffable) {
         Create create = new Create(diffable);
@@ -131,50 +233,21 @@ public class Diff {
 
     @SuppressWarnings("unchecked")
     private Change newUpdate(Diffable currentDiffable, Diffable pendingDiffable) {
-        List<Diff> diffs = new ArrayList<>();
-        DiffableType<? extends Diffable> type = DiffableType.getInstance(currentDiffable.getClass());
-        Set<String> currentConfiguredFields = DiffableInternals.getConfiguredFields(currentDiffable);
-        Set<String> pendingConfiguredFields = DiffableInternals.getConfiguredFields(pendingDiffable);
+        byte[] currentFingerprint = DiffableInternals.getFingerprint(currentDiffable);
 
-        for (DiffableField field : type.getFields()) {
-            if (!field.shouldBeDiffed()) {
-                continue;
-            }
-
-            String name = field.getName();
+        // Same configured values all the way down, so there's nothing to
+        // compare field by field.
+        if (currentFingerprint != null
+            && Arrays.equals(currentFingerprint, DiffableInternals.getFingerprint(pendingDiffable))) {
 
-            if (!currentConfiguredFields.contains(name) && !pendingConfiguredFields.contains(name)) {
-                continue;
-            }
-
-            Object currentValue = field.getValue(currentDiffable);
-            Object pendingValue = field.getValue(pendingDiffable);
-            Diff diff;
-
-            if (field.isCollection()) {
-                diff = new Diff((Collection<Diffable>) currentValue, (Collection<Diffable>) pendingValue);
-
-            } else if (currentValue != null) {
-                if (pendingValue != null) {
-                    diff = new Diff((Diffable) currentValue, (Diffable) pendingValue);
-
-                } else {
-                    diff = new Diff((Diffable) currentValue, null);
-                }
+            return newKeep(currentDiffable, pendingDiffable);
+        }
 
-            } else if (pendingValue != null) {
-                diff = new Diff(null, (Diffable) pendingValue);
+        List<Diff> diffs = newNestedDiffs(currentDiffable, pendingDiffable);
 
-            } else {
-                diff = null;
-            }
-
-            if (diff != null) {
-                diff.diff();
-                diffs.add(diff);
-            }
-        }
+        diffs.forEach(Diff::diff);
 
+        DiffableType<? extends Diffable> type = DiffableType.getInstance(currentDiffable.getClass());
         Set<DiffableField> changedFields = diffFields(currentDiffable, pendingDiffable);
 
         diffs.stream()
@@ -206,6 +279,73 @@ public class Diff {
         return change;
     }
 
+    @SuppressWarnings("unchecked")
+    private List<Diff> newNestedDiffs(Diffable currentDiffable, Diffable pendingDiffable) {
+        List<Diff> diffs = new ArrayList<>();
+        Set<String> currentConfiguredFields = DiffableInternals.getConfiguredFields(currentDiffable);
+        Set<String> pendingConfiguredFields = DiffableInternals.getConfiguredFields(pendingDiffable);
+
+        for (DiffableField field : DiffableType.getInstance(currentDiffable.getClass()).getFields()) {
+            if (!field.shouldBeDiffed()) {
+                continue;
+            }
+
+            String name = field.getName();
+
+            if (!currentConfiguredFields.contains(name) && !pendingConfiguredFields.contains(name)) {
+                continue;
+            }
+
+            Object currentValue = field.getValue(currentDiffable);
+            Object pendingValue = field.getValue(pendingDiffable);
+
+            if (field.isCollection()) {
+                diffs.add(new Diff((Collection<Diffable>) currentValue, (Collection<Diffable>) pendingValue));
+
+            } else if (currentValue != null || pendingValue != null) {
+                diffs.add(new Diff((Diffable) currentValue, (Diffable) pendingValue));
+            }
+        }
+
+        return diffs;
+    }
+
+    // Nested diffables still need their own keeps, so that they have a
+    // change and are listed in the plan.
+    private Change newKeep(Diffable currentDiffable, Diffable pendingDiffable) {
+        Change keep = new Keep(pendingDiffable);
+        List<Diff> diffs = newNestedDiffs(currentDiffable, pendingDiffable);
+
+        diffs.forEach(Diff::keep);
+        DiffableInternals.setChange(currentDiffable, keep);
+        DiffableInternals.setChange(pendingDiffable, keep);
+        keep.getDiffs().addAll(diffs);
+
+        return keep;
+    }
+
+    // Like diff, but for diffables whose parents have the same
+    // fingerprints, so the ones that pair up don't need to be compared.
+    private void keep() {
+        Map<String, Diffable> currentDiffables = this.currentDiffables.stream().collect(
+            LinkedHashMap::new,
+            (map, r) -> map.put(r.primaryKey(), r),
+            Map::putAll
+        );
+
+        for (Diffable pendingDiffable : pendingDiffables) {
+            Diffable currentDiffable = currentDiffables.remove(pendingDiffable.primaryKey());
+
+            changes.add(currentDiffable == null
+                ? newCreate(pendingDiffable)
+                : newKeep(currentDiffable, pendingDiffable));
+        }
+
+        for (Diffable resource : currentDiffables.values()) {
+            changes.add(newDelete(resource));
+        }
+    }
+
     private Set<DiffableField> diffFields(Diffable currentDiffable, Diffable pendingDiffable) {
         Set<String> currentConfiguredFields = DiffableInternals.getConfiguredFields(currentDiffable);
         Set<String> pendingConfiguredFields = DiffableInternals.getConfiguredFields(pendingDiffable);
@@ -343,15 +483,24 @@ public class Diff {
     }
 
     public void execute(GyroUI ui, State state) {
-        executeCreateKeepUpdate(ui, state);
-        executeReplace(ui, state);
-        executeDelete(ui, state);
+        int parallelism = state.getParallelism();
+
+        if (parallelism > 1) {
+            ChangeGraph.forCreateKeepUpdate(this).execute(ui, state, parallelism);
+            executeReplace(ui, state);
+            ChangeGraph.forDelete(this).execute(ui, state, parallelism);
+
+        } else {
+            executeCreateKeepUpdate(ui, state);
+            executeReplace(ui, state);
+            executeDelete(ui, state);
+        }
     }
 
     private void executeCreateKeepUpdate(GyroUI ui, State state) {
         for (Change change : getChanges()) {
             if (change instanceof Create || change instanceof Keep || change instanceof Update) {
-                executeChange(ui, state, change);
+                executeChange(ui, state, change, false);
             }
 
             for (Diff d : change.getDiffs()) {
@@ -363,7 +512,7 @@ public class Diff {
     private void executeReplace(GyroUI ui, State state) {
         for (Change change : getChanges()) {
             if (change instanceof Replace) {
-                executeChange(ui, state, change);
+                executeChange(ui, state, change, false);
             }
 
             for (Diff d : change.getDiffs()) {
@@ -381,12 +530,18 @@ public class Diff {
             }
 
             if (change instanceof Delete) {
-                executeChange(ui, state, change);
+                executeChange(ui, state, change, false);
             }
         }
     }
 
-    private void executeChange(GyroUI ui, State state, Change change) {
+    /**
+     * @param concurrent {@code true} if other changes may be executing at the
+     * same time, in which case the execution message and everything that the
+     * change writes are held back and written along with the result once the
+     * change is done.
+     */
+    static void executeChange(GyroUI ui, State state, Change change, boolean concurrent) {
         Diffable diffable = change.getDiffable();
 
         if (!(diffable instanceof Resource)) {
@@ -394,14 +549,22 @@ public class Diff {
         }
 
         if (change.changed.compareAndSet(false, true)) {
-            DiffableInternals.reevaluate(diffable);
+            Object lock = getLock(diffable);
+
+            synchronized (lock) {
+                DiffableInternals.reevaluate(diffable);
 
-            if (!diffable.writeExecution(ui, change)) {
-                change.writeExecution(ui);
+                if (!concurrent) {
+                    writeExecution(ui, change);
+                }
             }
 
+            BufferedGyroUI buffer = concurrent ? new BufferedGyroUI(ui, lock) : null;
+            GyroUI changeUi = buffer != null ? buffer : ui;
             ExecutionResult result;
 
+            GyroCore.pushUi(changeUi);
+
             try {
                 List<ChangeProcessor> processors = new ArrayList<>();
 
@@ -409,23 +572,46 @@ public class Diff {
                     processors.addAll(0, s.getSettings(ChangeSettings.class).getProcessors());
                 }
 
-                result = change.execute(ui, state, processors);
+                result = change.execute(changeUi, state, processors);
 
             } catch (Exception error) {
+                if (buffer != null) {
+                    synchronized (lock) {
+                        writeExecution(ui, change);
+                        buffer.flush();
+                    }
+                }
+
                 throw new GyroException(
                     String.format(
                         "Can't %s @|bold %s|@ resource!",
                         change.getClass().getSimpleName().toLowerCase(Locale.ENGLISH),
                         diffable),
                     error);
+
+            } finally {
+                GyroCore.popUi();
             }
 
             state.save();
 
-            if (result != null) {
-                result.write(ui);
+            synchronized (lock) {
+                if (buffer != null) {
+                    writeExecution(ui, change);
+                    buffer.flush();
+                }
+
+                if (result != null) {
+                    result.write(ui);
+                }
             }
         }
     }
 
+    private static void writeExecution(GyroUI ui, Change change) {
+        if (!change.getDiffable().writeExecution(ui, change)) {
+            change.writeExecution(ui);
+        }
+    }
+
 }
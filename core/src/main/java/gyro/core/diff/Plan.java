@@ -0,0 +1,246 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.diff;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.psddev.dari.util.IoUtils;
+import com.psddev.dari.util.ObjectUtils;
+import gyro.core.GyroException;
+import gyro.core.GyroInputStream;
+import gyro.core.resource.Diffable;
+import gyro.core.resource.DiffableField;
+import gyro.core.resource.DiffableType;
+import gyro.core.scope.RootScope;
+import gyro.util.Bug;
+
+/**
+ * Changes found by a {@link Diff}, saved to a file by
+ * {@code gyro up --plan-out} so that they can be applied later by
+ * {@code gyro up --plan-in}.
+ *
+ * <p>A plan also records a fingerprint of the state files that it was
+ * computed against, so that it's not applied after the state has moved.</p>
+ */
+public class Plan {
+
+    private static final int VERSION = 1;
+
+    private final String state;
+    private final List<Object> changes;
+
+    private Plan(String state, List<Object> changes) {
+        this.state = state;
+        this.changes = changes;
+    }
+
+    /**
+     * @param state Fingerprint of the state files the diff was computed
+     * against. See {@link #fingerprint(RootScope)}.
+     */
+    @SuppressWarnings("unchecked")
+    public static Plan of(Diff diff, String state) {
+        List<Map<String, Object>> changes = new ArrayList<>();
+
+        addChanges(diff, changes);
+
+        // Round-trip through JSON so that the plan compares equal to one
+        // that was read from a file.
+        return new Plan(state, (List<Object>) ObjectUtils.fromJson(ObjectUtils.toJson(changes)));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Plan read(Path file) {
+        Map<String, Object> plan;
+
+        try {
+            plan = (Map<String, Object>) ObjectUtils.fromJson(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+        } catch (IOException | RuntimeException error) {
+            throw new GyroException(String.format("Can't read the plan in @|bold %s|@!", file), error);
+        }
+
+        if (plan == null || !Integer.valueOf(VERSION).equals(ObjectUtils.to(Integer.class, plan.get("version")))) {
+            throw new GyroException(String.format(
+                "@|bold %s|@ isn't a plan that can be applied by this version of gyro!",
+                file));
+        }
+
+        return new Plan((String) plan.get("state"), (List<Object>) plan.get("changes"));
+    }
+
+    /**
+     * Returns a fingerprint of all the state files in the given
+     * {@code root}.
+     */
+    public static String fingerprint(RootScope root) {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+
+        } catch (NoSuchAlgorithmException error) {
+            throw new Bug(error);
+        }
+
+        List<String> files;
+
+        try (Stream<String> s = root.list()) {
+            files = s.sorted().collect(Collectors.toList());
+        }
+
+        for (String file : files) {
+            digest.update(file.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+
+            try (GyroInputStream input = root.openInput(file)) {
+                digest.update(IoUtils.toByteArray(input));
+
+            } catch (IOException error) {
+                throw new Bug(error);
+            }
+
+            digest.update((byte) 0);
+        }
+
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    private static void addChanges(Diff diff, List<Map<String, Object>> changes) {
+        for (Change change : diff.getChanges()) {
+            if (!(change instanceof Keep)) {
+                Diffable diffable = change.getDiffable();
+                Map<String, Object> c = new LinkedHashMap<>();
+
+                c.put("change", change.getClass().getSimpleName().toLowerCase(Locale.ENGLISH));
+                c.put("key", getKey(diffable));
+
+                Set<DiffableField> changedFields = null;
+
+                if (change instanceof Update) {
+                    changedFields = ((Update) change).getChangedFields();
+
+                } else if (change instanceof Replace) {
+                    changedFields = ((Replace) change).getChangedFields();
+                }
+
+                if (changedFields != null) {
+                    c.put("fields", changedFields.stream()
+                        .map(DiffableField::getName)
+                        .collect(Collectors.toList()));
+                }
+
+                if (!(change instanceof Delete)) {
+                    Map<String, Object> values = new LinkedHashMap<>();
+
+                    for (DiffableField field : DiffableType.getInstance(diffable).getFields()) {
+                        if (!field.shouldBeDiffed()) {
+                            values.put(field.getName(), toPlanValue(field.getValue(diffable)));
+                        }
+                    }
+
+                    c.put("values", values);
+                }
+
+                changes.add(c);
+            }
+
+            for (Diff d : change.getDiffs()) {
+                addChanges(d, changes);
+            }
+        }
+    }
+
+    private static String getKey(Diffable diffable) {
+        List<String> key = new ArrayList<>();
+
+        for (Diffable d = diffable; d != null; d = d.parent()) {
+            key.add(d.toString());
+        }
+
+        Collections.reverse(key);
+        return String.join(" / ", key);
+    }
+
+    private static Object toPlanValue(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Number || value instanceof String) {
+            return value;
+
+        } else if (value instanceof Collection) {
+            return ((Collection<?>) value).stream()
+                .map(Plan::toPlanValue)
+                .collect(Collectors.toList());
+
+        } else if (value instanceof Map) {
+            Map<String, Object> map = new LinkedHashMap<>();
+
+            ((Map<?, ?>) value).forEach((k, v) -> map.put(String.valueOf(k), toPlanValue(v)));
+            return map;
+
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+
+        } else {
+            return value.toString();
+        }
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Returns {@code true} if this plan has the same changes as the given
+     * {@code other} plan.
+     */
+    public boolean hasSameChanges(Plan other) {
+        return changes.equals(other.changes);
+    }
+
+    public void write(Path file) {
+        Map<String, Object> plan = new LinkedHashMap<>();
+
+        plan.put("version", VERSION);
+        plan.put("state", state);
+        plan.put("changes", changes);
+
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(ObjectUtils.toJson(plan));
+
+        } catch (IOException error) {
+            throw new GyroException(String.format("Can't write the plan to @|bold %s|@!", file), error);
+        }
+    }
+
+}
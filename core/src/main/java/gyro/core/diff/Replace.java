@@ -64,6 +64,10 @@ public class Replace extends Change {
         return pendingDiffable;
     }
 
+    public Set<DiffableField> getChangedFields() {
+        return changedFields;
+    }
+
     private void writeFields(GyroUI ui) {
         if (!ui.isVerbose()) {
             return;
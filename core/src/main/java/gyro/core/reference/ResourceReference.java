@@ -0,0 +1,317 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.reference;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import gyro.core.resource.DiffableInternals;
+import gyro.core.resource.DiffableType;
+import gyro.core.resource.Resource;
+import gyro.lang.ast.Node;
+import gyro.lang.ast.NodeVisitor;
+import gyro.lang.ast.PairNode;
+import gyro.lang.ast.block.DirectiveNode;
+import gyro.lang.ast.block.DirectiveSection;
+import gyro.lang.ast.block.FileNode;
+import gyro.lang.ast.block.KeyBlockNode;
+import gyro.lang.ast.block.ResourceNode;
+import gyro.lang.ast.value.BinaryNode;
+import gyro.lang.ast.value.IndexedNode;
+import gyro.lang.ast.value.InterpolatedStringNode;
+import gyro.lang.ast.value.ListNode;
+import gyro.lang.ast.value.MapNode;
+import gyro.lang.ast.value.Option;
+import gyro.lang.ast.value.ReferenceNode;
+import gyro.lang.ast.value.ValueNode;
+
+/**
+ * Reference to a resource, such as {@code $(aws::vpc vpc-example)}, found
+ * statically in the configuration without evaluating it.
+ *
+ * <p>A reference whose name can't be determined without evaluation, such as
+ * {@code $(aws::vpc $name)}, matches every resource of that type.</p>
+ */
+public class ResourceReference {
+
+    private final String type;
+    private final String name;
+    private final boolean wildcard;
+
+    private ResourceReference(String type, String name, boolean wildcard) {
+        this.type = type;
+        this.name = name;
+        this.wildcard = wildcard;
+    }
+
+    /**
+     * Finds all resource references in the given {@code nodes}, including the
+     * ones in nested blocks.
+     *
+     * @param nodes Nullable.
+     * @return Never {@code null}.
+     */
+    public static Set<ResourceReference> find(Collection<? extends Node> nodes) {
+        Set<ResourceReference> references = new LinkedHashSet<>();
+
+        if (nodes != null) {
+            Finder finder = new Finder();
+            nodes.forEach(n -> finder.visit(n, references));
+        }
+
+        return references;
+    }
+
+    /**
+     * Returns {@code true} if any of the given {@code nodes} references a
+     * variable, such as {@code vpc} in {@code $vpc.id}, that may refer to a
+     * resource indirectly.
+     *
+     * @param nodes Nullable.
+     * @param direct Nonnull. Returns {@code true} for the names that are
+     * known not to refer to a resource indirectly, such as resolvers.
+     */
+    public static boolean hasIndirect(Collection<? extends Node> nodes, Predicate<String> direct) {
+        if (nodes == null) {
+            return false;
+        }
+
+        Finder finder = new Finder();
+        Set<ResourceReference> references = new LinkedHashSet<>();
+
+        nodes.forEach(n -> finder.visit(n, references));
+
+        return finder.computed || finder.variables.stream().anyMatch(direct.negate());
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return {@code null} if the name can't be determined statically.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public boolean isWildcard() {
+        return wildcard;
+    }
+
+    public boolean matches(Resource resource) {
+        DiffableType<Resource> resourceType = DiffableType.getInstance(resource);
+
+        if (!resourceType.isRoot() || !type.equals(resourceType.getName())) {
+            return false;
+
+        } else if (name == null) {
+            return true;
+
+        } else if (wildcard) {
+            return DiffableInternals.getName(resource).startsWith(name);
+
+        } else {
+            return name.equals(DiffableInternals.getName(resource));
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, name, wildcard);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+
+        if (!(other instanceof ResourceReference)) {
+            return false;
+        }
+
+        ResourceReference otherReference = (ResourceReference) other;
+
+        return type.equals(otherReference.type)
+            && Objects.equals(name, otherReference.name)
+            && wildcard == otherReference.wildcard;
+    }
+
+    @Override
+    public String toString() {
+        return name != null
+            ? type + " " + name + (wildcard ? "*" : "")
+            : type + " *";
+    }
+
+    private static class Finder implements NodeVisitor<Set<ResourceReference>, Void, RuntimeException> {
+
+        private final Set<String> variables = new LinkedHashSet<>();
+        private boolean computed;
+
+        private void visitAll(Collection<? extends Node> nodes, Set<ResourceReference> references) {
+            for (Node node : nodes) {
+                if (node != null) {
+                    visit(node, references);
+                }
+            }
+        }
+
+        @Override
+        public Void visitDirective(DirectiveNode node, Set<ResourceReference> references) {
+            visitAll(node.getArguments(), references);
+
+            for (Option option : node.getOptions()) {
+                visitAll(option.getArguments(), references);
+            }
+
+            for (DirectiveSection section : node.getSections()) {
+                visitAll(section.getArguments(), references);
+                visitAll(section.getBody(), references);
+            }
+
+            visitAll(node.getBody(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitPair(PairNode node, Set<ResourceReference> references) {
+            visit(node.getKey(), references);
+            visit(node.getValue(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitFile(FileNode node, Set<ResourceReference> references) {
+            visitAll(node.getBody(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitKeyBlock(KeyBlockNode node, Set<ResourceReference> references) {
+            if (node.getName() != null) {
+                visit(node.getName(), references);
+            }
+
+            visitAll(node.getBody(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitResource(ResourceNode node, Set<ResourceReference> references) {
+            visit(node.getName(), references);
+            visitAll(node.getBody(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitBinary(BinaryNode node, Set<ResourceReference> references) {
+            visit(node.getLeft(), references);
+            visit(node.getRight(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitIndexed(IndexedNode node, Set<ResourceReference> references) {
+            visit(node.getValue(), references);
+            visitAll(node.getIndexes(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitInterpolatedString(InterpolatedStringNode node, Set<ResourceReference> references) {
+            visitAll(node.getItems(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitList(ListNode node, Set<ResourceReference> references) {
+            visitAll(node.getItems(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitMap(MapNode node, Set<ResourceReference> references) {
+            visitAll(node.getEntries(), references);
+            return null;
+        }
+
+        @Override
+        public Void visitReference(ReferenceNode node, Set<ResourceReference> references) {
+            List<Node> arguments = node.getArguments();
+
+            if (!arguments.isEmpty()) {
+                Node first = arguments.get(0);
+
+                if (first instanceof ValueNode) {
+                    Object type = ((ValueNode) first).getValue();
+
+                    if (type instanceof String && ((String) type).contains("::")) {
+                        for (Node argument : arguments.subList(1, arguments.size())) {
+                            references.add(toReference((String) type, argument));
+                        }
+
+                    } else if (type instanceof String) {
+                        variables.add((String) type);
+                    }
+
+                } else {
+                    computed = true;
+                }
+            }
+
+            visitAll(arguments, references);
+
+            for (Option option : node.getOptions()) {
+                visitAll(option.getArguments(), references);
+            }
+
+            return null;
+        }
+
+        private ResourceReference toReference(String type, Node argument) {
+            if (argument instanceof ValueNode) {
+                Object value = ((ValueNode) argument).getValue();
+
+                if (value instanceof String) {
+                    String name = (String) value;
+
+                    if (name.endsWith("*")) {
+                        return new ResourceReference(type, name.substring(0, name.length() - 1), true);
+
+                    } else {
+                        return new ResourceReference(type, name, false);
+                    }
+                }
+            }
+
+            return new ResourceReference(type, null, true);
+        }
+
+        @Override
+        public Void visitValue(ValueNode node, Set<ResourceReference> references) {
+            return null;
+        }
+
+    }
+
+}
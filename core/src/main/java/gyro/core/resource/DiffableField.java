@@ -17,6 +17,9 @@
 package gyro.core.resource;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -33,6 +36,7 @@ import com.google.common.base.CaseFormat;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.psddev.dari.util.ConversionException;
 import gyro.core.GyroException;
 import gyro.core.Reflections;
@@ -41,6 +45,7 @@ import gyro.core.validation.Required;
 import gyro.core.validation.ValidationError;
 import gyro.core.validation.Validator;
 import gyro.core.validation.ValidatorClass;
+import gyro.util.Bug;
 
 public class DiffableField {
 
@@ -59,6 +64,10 @@ public class DiffableField {
     private final String name;
     private final Method getter;
     private final Method setter;
+    private final MethodHandle getterHandle;
+    private final MethodHandle setterHandle;
+    private final Type setterType;
+    private final Class<?> setterClass;
     private final boolean updatable;
     private final boolean calculated;
     private final boolean immutable;
@@ -66,11 +75,17 @@ public class DiffableField {
     private final boolean required;
     private final boolean collection;
     private final Class<?> itemClass;
+    private final List<AnnotationValidator> validators;
+    private volatile Boolean diffed;
 
     protected DiffableField(String javaName, Method getter, Method setter, Type type) {
         this.name = CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_HYPHEN, javaName);
         this.getter = getter;
         this.setter = setter;
+        this.getterHandle = unreflect(getter, MethodType.methodType(Object.class, Object.class));
+        this.setterHandle = unreflect(setter, MethodType.methodType(void.class, Object.class, Object.class));
+        this.setterType = setter.getGenericParameterTypes()[0];
+        this.setterClass = setter.getParameterTypes()[0];
         this.updatable = isAnnotationPresent(getter, Updatable.class);
         this.calculated = isAnnotationPresent(getter, Calculated.class);
         this.immutable = isAnnotationPresent(getter, Immutable.class);
@@ -97,12 +112,31 @@ public class DiffableField {
                 "@|bold %s|@ isn't supported as a field type!",
                 type.getTypeName()));
         }
+
+        // Resolved once since validation runs for every resource.
+        ImmutableList.Builder<AnnotationValidator> validators = ImmutableList.builder();
+
+        for (Annotation annotation : getAnnotations(getter)) {
+            ValidatorClass validatorClass = annotation.annotationType().getAnnotation(ValidatorClass.class);
+
+            if (validatorClass != null) {
+                Validator<Annotation> validator = VALIDATORS.getUnchecked(validatorClass.value());
+
+                validators.add(new AnnotationValidator(annotation, validator.forAnnotation(annotation)));
+            }
+        }
+
+        this.validators = validators.build();
     }
 
     protected DiffableField(DiffableField field) {
         name = field.name;
         getter = field.getter;
         setter = field.setter;
+        getterHandle = field.getterHandle;
+        setterHandle = field.setterHandle;
+        setterType = field.setterType;
+        setterClass = field.setterClass;
         updatable = field.updatable;
         calculated = field.calculated;
         immutable = field.immutable;
@@ -110,6 +144,7 @@ public class DiffableField {
         required = field.required;
         collection = field.collection;
         itemClass = field.itemClass;
+        validators = field.validators;
     }
 
     public String getName() {
@@ -146,29 +181,45 @@ public class DiffableField {
 
     @SuppressWarnings("unchecked")
     public boolean shouldBeDiffed() {
-        return Diffable.class.isAssignableFrom(itemClass)
-            && !DiffableType.getInstance((Class<? extends Diffable>) itemClass).isRoot();
+        // Computed on first use instead of in the constructor since the item
+        // type may be the one that's still being built.
+        Boolean diffed = this.diffed;
+
+        if (diffed == null) {
+            diffed = Diffable.class.isAssignableFrom(itemClass)
+                && !DiffableType.getInstance((Class<? extends Diffable>) itemClass).isRoot();
+
+            this.diffed = diffed;
+        }
+
+        return diffed;
     }
 
     public Object getValue(Diffable diffable) {
-        return Reflections.invoke(getter, diffable);
+        try {
+            return getterHandle.invokeExact((Object) diffable);
+
+        } catch (RuntimeException | Error error) {
+            throw error;
+
+        } catch (Throwable error) {
+            throw new GyroException(error);
+        }
     }
 
     public void setValue(Diffable diffable, Object value) {
         Scope scope = diffable.scope;
-        Type type = setter.getGenericParameterTypes()[0];
+        Object convertedValue;
 
         try {
-            if (value instanceof Collection
-                && !Collection.class.isAssignableFrom(setter.getParameterTypes()[0])) {
-
+            if (value instanceof Collection && !Collection.class.isAssignableFrom(setterClass)) {
                 value = ((Collection<?>) value).stream()
                     .filter(Objects::nonNull)
                     .findFirst()
                     .orElse(null);
             }
 
-            Reflections.invoke(setter, diffable, scope.getRootScope().convertValue(type, value));
+            convertedValue = scope.getRootScope().convertValue(setterType, value);
 
         } catch (ConversionException error) {
             throw new GyroException(
@@ -177,7 +228,17 @@ public class DiffableField {
                     "Can't set @|bold %s|@ to @|bold %s|@ because it can't be converted to an instance of @|bold %s|@!",
                     name,
                     value,
-                    type.getTypeName()));
+                    setterType.getTypeName()));
+        }
+
+        try {
+            setterHandle.invokeExact((Object) diffable, convertedValue);
+
+        } catch (RuntimeException | Error error) {
+            throw error;
+
+        } catch (Throwable error) {
+            throw new GyroException(error);
         }
     }
 
@@ -207,15 +268,9 @@ public class DiffableField {
         Object value = getValue(diffable);
         List<ValidationError> errors = new ArrayList<>();
 
-        for (Annotation annotation : getAnnotations(getter)) {
-            ValidatorClass validatorClass = annotation.annotationType().getAnnotation(ValidatorClass.class);
-
-            if (validatorClass != null) {
-                Validator<Annotation> validator = VALIDATORS.getUnchecked(validatorClass.value());
-
-                if (!validator.isValid(diffable, annotation, value)) {
-                    errors.add(new ValidationError(diffable, name, validator.getMessage(annotation)));
-                }
+        for (AnnotationValidator v : validators) {
+            if (!v.validator.isValid(diffable, v.annotation, value)) {
+                errors.add(new ValidationError(diffable, name, v.validator.getMessage(v.annotation)));
             }
         }
 
@@ -261,6 +316,18 @@ public class DiffableField {
         }
     }
 
+    // Resolved once per field since the values are read and written
+    // repeatedly by diffs, validation, state and copies.
+    private static MethodHandle unreflect(Method method, MethodType type) {
+        try {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method).asType(type);
+
+        } catch (IllegalAccessException error) {
+            throw new Bug(error);
+        }
+    }
+
     private static Method getSuperMethod(Method method) {
         Class<?> superclass = method.getDeclaringClass().getSuperclass();
         if (superclass != null) {
@@ -273,4 +340,16 @@ public class DiffableField {
             return null;
         }
     }
+
+    private static class AnnotationValidator {
+
+        private final Annotation annotation;
+        private final Validator<Annotation> validator;
+
+        public AnnotationValidator(Annotation annotation, Validator<Annotation> validator) {
+            this.annotation = annotation;
+            this.validator = validator;
+        }
+
+    }
 }
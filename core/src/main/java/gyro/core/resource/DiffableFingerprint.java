@@ -0,0 +1,249 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.resource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import gyro.util.Bug;
+
+/**
+ * Structural hash of the configured field values of a {@link Diffable},
+ * including its subresources.
+ *
+ * <p>Two diffables with the same fingerprint have the same configured
+ * fields with equal values, so diffing them can only result in a
+ * {@link gyro.core.diff.Keep}. Values whose equality can't be captured
+ * reliably, such as arbitrary objects, make the diffable unfingerprintable
+ * so that it's always diffed field by field.</p>
+ */
+class DiffableFingerprint {
+
+    private static final byte[] NONE = new byte[0];
+
+    private final MessageDigest digest;
+
+    private DiffableFingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+
+        } catch (NoSuchAlgorithmException error) {
+            throw new Bug(error);
+        }
+    }
+
+    /**
+     * @return {@code null} if the given {@code diffable} can't be
+     * fingerprinted.
+     */
+    public static byte[] get(Diffable diffable) {
+        byte[] fingerprint = diffable.fingerprint;
+
+        if (fingerprint == null) {
+            DiffableFingerprint f = new DiffableFingerprint();
+
+            fingerprint = f.addDiffable(diffable) ? f.digest.digest() : NONE;
+            diffable.fingerprint = fingerprint;
+        }
+
+        return fingerprint != NONE ? fingerprint : null;
+    }
+
+    private boolean addDiffable(Diffable diffable) {
+        Set<String> configuredFields = DiffableInternals.getConfiguredFields(diffable);
+
+        addString(diffable.getClass().getName());
+        addInt(configuredFields.size());
+        new TreeSet<>(configuredFields).forEach(this::addString);
+
+        for (DiffableField field : DiffableType.getInstance(diffable).getFields()) {
+            String name = field.getName();
+
+            if (!configuredFields.contains(name)) {
+                continue;
+            }
+
+            Object value = field.getValue(diffable);
+
+            addString(name);
+
+            if (!(field.shouldBeDiffed() ? addSubresources(value) : addValue(value))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean addSubresources(Object value) {
+        if (value == null) {
+            addString("null");
+            return true;
+
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            Set<String> primaryKeys = new HashSet<>();
+
+            addString("subresources");
+            addInt(collection.size());
+
+            for (Object item : collection) {
+
+                // Diff matches subresources by their primary keys, so they
+                // must be unique for the fingerprint to be meaningful.
+                if (!(item instanceof Diffable) || !primaryKeys.add(((Diffable) item).primaryKey())) {
+                    return false;
+                }
+
+                if (!addSubresource((Diffable) item)) {
+                    return false;
+                }
+            }
+
+            return true;
+
+        } else if (value instanceof Diffable) {
+            addString("subresource");
+            return addSubresource((Diffable) value);
+
+        } else {
+            return false;
+        }
+    }
+
+    private boolean addSubresource(Diffable subresource) {
+        byte[] fingerprint = get(subresource);
+
+        if (fingerprint == null) {
+            return false;
+        }
+
+        addString(String.valueOf(subresource.primaryKey()));
+        digest.update(fingerprint);
+        return true;
+    }
+
+    private boolean addValue(Object value) {
+        if (value == null) {
+            addString("null");
+            return true;
+
+        } else if (value instanceof String
+            || value instanceof Boolean
+            || value instanceof Character
+            || value instanceof Byte
+            || value instanceof Short
+            || value instanceof Integer
+            || value instanceof Long
+            || value instanceof Float
+            || value instanceof Double
+            || value instanceof BigInteger
+            || value instanceof BigDecimal) {
+
+            addString(value.getClass().getName());
+            addString(value.toString());
+            return true;
+
+        } else if (value instanceof Enum) {
+            addString(((Enum<?>) value).getDeclaringClass().getName());
+            addString(((Enum<?>) value).name());
+            return true;
+
+        } else if (value instanceof Diffable) {
+            return addReference((Diffable) value);
+
+        } else if (value instanceof List || value instanceof Set) {
+            Collection<?> collection = (Collection<?>) value;
+
+            addString(value instanceof List ? "list" : "set");
+            addInt(collection.size());
+
+            for (Object item : collection) {
+                if (!addValue(item)) {
+                    return false;
+                }
+            }
+
+            return true;
+
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+
+            addString("map");
+            addInt(map.size());
+
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!addValue(entry.getKey()) || !addValue(entry.getValue())) {
+                    return false;
+                }
+            }
+
+            return true;
+
+        } else {
+            return false;
+        }
+    }
+
+    // Mirrors Diffable#equals for references to other resources.
+    private boolean addReference(Diffable diffable) {
+        addString("reference");
+        addString(diffable.getClass().getName());
+
+        if (diffable.external) {
+            addString("external");
+            return addValue(DiffableType.getInstance(diffable).getIdField().getValue(diffable));
+
+        } else if (diffable.parent() == null) {
+            addString(diffable.name);
+            addString(diffable.primaryKey());
+            return true;
+
+        } else {
+            return false;
+        }
+    }
+
+    private void addInt(int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private void addString(String value) {
+        if (value == null) {
+            addInt(-1);
+
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            addInt(bytes.length);
+            digest.update(bytes);
+        }
+    }
+
+}
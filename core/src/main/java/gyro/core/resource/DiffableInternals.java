@@ -16,17 +16,22 @@
 
 package gyro.core.resource;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
 
+import gyro.core.Reflections;
 import gyro.core.diff.Change;
 import gyro.core.scope.DiffableScope;
 import gyro.core.scope.NodeEvaluator;
 import gyro.core.scope.RootScope;
+import gyro.core.scope.Scope;
 import gyro.lang.ast.block.BlockNode;
 
 public final class DiffableInternals {
@@ -71,6 +76,15 @@ public final class DiffableInternals {
         diffable.change = change;
     }
 
+    /**
+     * Returns the fingerprint of the configured field values of the given
+     * {@code diffable}, or {@code null} if it can't be fingerprinted. Equal
+     * fingerprints mean that diffing can only result in a keep.
+     */
+    public static byte[] getFingerprint(Diffable diffable) {
+        return DiffableFingerprint.get(diffable);
+    }
+
     public static void reevaluate(Diffable diffable) {
         DiffableScope oldScope = diffable.scope;
 
@@ -96,6 +110,179 @@ public final class DiffableInternals {
         }
     }
 
+    /**
+     * Creates a shallow copy of the given {@code diffable} that shares its
+     * scope and subresources, but has its own collections so that they can
+     * be changed without affecting the original.
+     *
+     * @param diffable The diffable to copy
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Diffable> T copy(T diffable) {
+        T copy = Reflections.newInstance((Class<T>) diffable.getClass());
+
+        copy.external = diffable.external;
+        copy.parent = diffable.parent;
+        copy.name = diffable.name;
+        copy.scope = diffable.scope;
+        copy.configuredFields = diffable.configuredFields != null
+            ? new LinkedHashSet<>(diffable.configuredFields)
+            : null;
+
+        copy.modifications.addAll(diffable.modifications);
+
+        for (DiffableField field : DiffableType.getInstance(diffable).getFields()) {
+            Object value = field.getValue(diffable);
+
+            if (value == null) {
+                continue;
+
+            } else if (value instanceof List) {
+                value = new ArrayList<>((List<?>) value);
+
+            } else if (value instanceof Set) {
+                value = new LinkedHashSet<>((Set<?>) value);
+
+            } else if (value instanceof Map) {
+                value = new LinkedHashMap<>((Map<?, ?>) value);
+            }
+
+            field.setValue(copy, value);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Copies the given {@code diffable}, along with its modifications and
+     * subresources, into a new scope under the given {@code parent}. Each
+     * copy is recorded in {@code copies} so that references to the originals
+     * can be replaced afterwards using {@link #replaceReferences}.
+     *
+     * @param diffable The diffable to copy
+     * @param parent The parent of the scope of the copy
+     * @param copies Copies keyed by the originals, should be an identity map
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Diffable> T snapshot(T diffable, Scope parent, Map<Diffable, Diffable> copies) {
+        T copy = Reflections.newInstance((Class<T>) diffable.getClass());
+        DiffableScope scope = diffable.scope.copy(parent);
+        SelfSettings self = (SelfSettings) diffable.scope.getSettingsByClass().getIfPresent(SelfSettings.class);
+
+        if (self != null && self.getSelf() == diffable) {
+            scope.getSettingsByClass().invalidate(SelfSettings.class);
+            scope.getSettings(SelfSettings.class).setSelf((Resource) copy);
+        }
+
+        copies.put(diffable, copy);
+
+        copy.external = diffable.external;
+        copy.name = diffable.name;
+        copy.scope = scope;
+        copy.configuredFields = diffable.configuredFields != null
+            ? new LinkedHashSet<>(diffable.configuredFields)
+            : null;
+
+        for (Modification<? extends Diffable> modification : diffable.modifications) {
+            copy.modifications.add(snapshot(modification, scope, copies));
+        }
+
+        for (DiffableField field : DiffableType.getInstance(diffable).getFields()) {
+            Object value = field.getValue(diffable);
+
+            if (value == null) {
+                continue;
+
+            } else if (field.shouldBeDiffed()) {
+                if (value instanceof Collection) {
+                    Collection<Object> subresources = value instanceof Set ? new LinkedHashSet<>() : new ArrayList<>();
+
+                    for (Object item : (Collection<?>) value) {
+                        subresources.add(item instanceof Diffable ? snapshot((Diffable) item, scope, copies) : item);
+                    }
+
+                    value = subresources;
+
+                } else if (value instanceof Diffable) {
+                    value = snapshot((Diffable) value, scope, copies);
+                }
+
+            } else if (value instanceof List) {
+                value = new ArrayList<>((List<?>) value);
+
+            } else if (value instanceof Set) {
+                value = new LinkedHashSet<>((Set<?>) value);
+
+            } else if (value instanceof Map) {
+                value = new LinkedHashMap<>((Map<?, ?>) value);
+            }
+
+            field.setValue(copy, value);
+        }
+
+        update(copy);
+        return copy;
+    }
+
+    /**
+     * Replaces the references to the originals in the copies made by
+     * {@link #snapshot} with references to the copies.
+     *
+     * @param copies Copies keyed by the originals
+     */
+    public static void replaceReferences(Map<Diffable, Diffable> copies) {
+        for (Diffable copy : copies.values()) {
+            for (DiffableField field : DiffableType.getInstance(copy).getFields()) {
+                if (field.shouldBeDiffed()) {
+                    continue;
+                }
+
+                Object value = field.getValue(copy);
+                Object replaced = replaceReference(value, copies);
+
+                if (replaced != value) {
+                    field.setValue(copy, replaced);
+                }
+            }
+        }
+    }
+
+    private static Object replaceReference(Object value, Map<Diffable, Diffable> copies) {
+        if (value instanceof Diffable) {
+            return copies.getOrDefault(value, (Diffable) value);
+
+        } else if (value instanceof Collection) {
+            Collection<Object> replaced = value instanceof Set ? new LinkedHashSet<>() : new ArrayList<>();
+            boolean changed = false;
+
+            for (Object item : (Collection<?>) value) {
+                Object replacedItem = replaceReference(item, copies);
+
+                changed |= replacedItem != item;
+                replaced.add(replacedItem);
+            }
+
+            return changed ? replaced : value;
+
+        } else if (value instanceof Map) {
+            Map<Object, Object> replaced = new LinkedHashMap<>();
+            boolean changed = false;
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                Object item = entry.getValue();
+                Object replacedItem = replaceReference(item, copies);
+
+                changed |= replacedItem != item;
+                replaced.put(entry.getKey(), replacedItem);
+            }
+
+            return changed ? replaced : value;
+
+        } else {
+            return value;
+        }
+    }
+
     /**
      * Create a new scope that is disconnected from the original configuration.
      *
@@ -103,6 +290,7 @@ public final class DiffableInternals {
      */
     public static void disconnect(Diffable diffable) {
         diffable.scope = new DiffableScope(diffable.scope.getParent(), null);
+        diffable.fingerprint = null;
 
         disconnectChildren(diffable);
     }
@@ -117,6 +305,7 @@ public final class DiffableInternals {
                     .map(Diffable.class::cast)
                     .forEach(d -> {
                         d.scope = new DiffableScope(diffable.scope, null);
+                        d.fingerprint = null;
 
                         disconnectChildren(d);
                     });
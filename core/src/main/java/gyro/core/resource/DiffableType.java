@@ -18,21 +18,25 @@ package gyro.core.resource;
 
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import gyro.core.GyroException;
 import gyro.core.Reflections;
 import gyro.core.auth.CredentialsSettings;
@@ -42,6 +46,7 @@ import gyro.core.scope.Scope;
 import gyro.core.validation.ValidationError;
 import gyro.lang.ast.Node;
 import gyro.parser.antlr4.GyroParser;
+import gyro.util.Bug;
 
 public class DiffableType<D extends Diffable> {
 
@@ -61,9 +66,15 @@ public class DiffableType<D extends Diffable> {
     private final Node description;
     private final DiffableField idField;
     private final List<DiffableField> fields;
+    private final Method refreshAllMethod;
     private final Set<Class<? extends Modification<D>>> modificationClasses = new HashSet<>();
     private final List<ModificationField> modificationFields = new ArrayList<>();
 
+    // Rebuilt when a modification is added since they're read in every diff,
+    // validation and copy.
+    private volatile List<DiffableField> allFields;
+    private volatile Map<String, DiffableField> fieldsByName;
+
     @SuppressWarnings("unchecked")
     public static <T extends Diffable> DiffableType<T> getInstance(Class<T> diffableClass) {
         return (DiffableType<T>) INSTANCES.getUnchecked(diffableClass);
@@ -117,6 +128,19 @@ public class DiffableType<D extends Diffable> {
 
         this.idField = idField;
         this.fields = fields.build();
+
+        updateFields();
+
+        // Static methods are inherited, but a refreshAll in a superclass
+        // would refresh the instances as the wrong type.
+        this.refreshAllMethod = Stream.of(diffableClass.getMethods())
+            .filter(m -> m.getDeclaringClass() == diffableClass)
+            .filter(m -> m.getName().equals("refreshAll"))
+            .filter(m -> Modifier.isStatic(m.getModifiers()))
+            .filter(m -> m.getParameterCount() == 1 && m.getParameterTypes()[0].isAssignableFrom(List.class))
+            .filter(m -> Collection.class.isAssignableFrom(m.getReturnType()))
+            .findFirst()
+            .orElse(null);
     }
 
     public boolean isRoot() {
@@ -127,27 +151,42 @@ public class DiffableType<D extends Diffable> {
         return name;
     }
 
+    /**
+     * Returns {@code true} if the diffable class has a static
+     * {@code refreshAll(List)} method that can refresh many instances at
+     * once.
+     */
+    public boolean isRefreshAllSupported() {
+        return refreshAllMethod != null;
+    }
+
+    /**
+     * Refreshes all the given {@code diffables} at once.
+     *
+     * @return Diffables that still exist.
+     * @see #isRefreshAllSupported()
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<D> refreshAll(List<D> diffables) {
+        if (refreshAllMethod == null) {
+            throw new Bug(String.format(
+                "@|bold %s|@ class doesn't have a static refreshAll(List) method!",
+                diffableClass.getName()));
+        }
+
+        return (Collection<D>) Reflections.invoke(refreshAllMethod, null, diffables);
+    }
+
     public DiffableField getIdField() {
         return idField;
     }
 
     public List<DiffableField> getFields() {
-        ImmutableList.Builder<DiffableField> fields = ImmutableList.builder();
-
-        fields.addAll(this.fields);
-        fields.addAll(this.modificationFields);
-
-        return fields.build();
+        return allFields;
     }
 
     public DiffableField getField(String name) {
-        for (DiffableField field : getFields()) {
-            if (field.getName().equals(name)) {
-                return field;
-            }
-        }
-
-        return null;
+        return fieldsByName.get(name);
     }
 
     public D newExternal(RootScope root, Object id) {
@@ -215,6 +254,8 @@ public class DiffableType<D extends Diffable> {
 
     @SuppressWarnings("unchecked")
     public void setValues(D diffable, Map<String, Object> values) {
+        diffable.fingerprint = null;
+
         if (diffable.configuredFields == null) {
             diffable.configuredFields = new LinkedHashSet<>(
                 Optional.ofNullable((Collection<String>) values.get("_configured-fields"))
@@ -255,7 +296,7 @@ public class DiffableType<D extends Diffable> {
         return errors;
     }
 
-    void modify(Class<? extends Modification<D>> modificationClass) {
+    synchronized void modify(Class<? extends Modification<D>> modificationClass) {
         if (modificationClasses.add(modificationClass)) {
             DiffableType<? extends Modification<D>> modificationType = DiffableType.getInstance(modificationClass);
 
@@ -265,9 +306,27 @@ public class DiffableType<D extends Diffable> {
                     .map(ModificationField::new)
                     .collect(Collectors.toSet())
             );
+
+            updateFields();
         }
     }
 
+    private void updateFields() {
+        List<DiffableField> allFields = ImmutableList.<DiffableField>builder()
+            .addAll(fields)
+            .addAll(modificationFields)
+            .build();
+
+        Map<String, DiffableField> fieldsByName = new LinkedHashMap<>();
+
+        for (DiffableField field : allFields) {
+            fieldsByName.putIfAbsent(field.getName(), field);
+        }
+
+        this.allFields = allFields;
+        this.fieldsByName = ImmutableMap.copyOf(fieldsByName);
+    }
+
     private void validateValue(List<ValidationError> errors, Diffable parent, String name, Object value) {
         if (value == null) {
             return;
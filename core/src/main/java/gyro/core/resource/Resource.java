@@ -25,6 +25,16 @@ import gyro.core.scope.State;
 
 public abstract class Resource extends Diffable {
 
+    /**
+     * Updates this resource with the latest values from the provider.
+     *
+     * <p>Subclasses may also define a static {@code refreshAll(List)}
+     * method that refreshes many resources of the same type at once and
+     * returns the ones that still exist. It's used instead of this method
+     * when refreshing the state.</p>
+     *
+     * @return {@code false} if the resource no longer exists.
+     */
     public abstract boolean refresh();
 
     public abstract void create(GyroUI ui, State state) throws Exception;
@@ -16,9 +16,9 @@
 
 package gyro.core.scope;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import gyro.core.GyroUI;
@@ -26,10 +26,16 @@ import gyro.lang.ast.Node;
 
 public class Defer extends Error {
 
+    // Defers are thrown and caught constantly during evaluation to signal
+    // unresolved references, so filling in their stack traces is wasteful.
+    // Set the gyro.deferStackTraces system property to get them back for
+    // debugging.
+    private static final boolean STACK_TRACES = Boolean.getBoolean("gyro.deferStackTraces");
+
     private final Node node;
 
     public Defer(Node node, String message, Defer cause) {
-        super(message, cause);
+        super(message, cause, false, STACK_TRACES);
 
         this.node = node;
     }
@@ -39,33 +45,7 @@ public class Defer extends Error {
     }
 
     public static <T> void execute(List<T> items, Consumer<T> consumer) {
-        int size = items.size();
-
-        while (true) {
-            List<Defer> errors = new ArrayList<>();
-            List<T> deferred = new ArrayList<>();
-
-            for (T item : items) {
-                try {
-                    consumer.accept(item);
-
-                } catch (Defer error) {
-                    errors.add(error);
-                    deferred.add(item);
-                }
-            }
-
-            if (deferred.isEmpty()) {
-                break;
-
-            } else if (size == deferred.size()) {
-                throw new ExecuteDefer(errors);
-
-            } else {
-                items = deferred;
-                size = items.size();
-            }
-        }
+        DeferScheduler.execute(items, consumer);
     }
 
     public static void writeErrors(GyroUI ui, String message, Collection<? extends Defer> errors) {
@@ -79,6 +59,18 @@ public class Defer extends Error {
         }
     }
 
+    /**
+     * Returns the keys of what needs to be defined before the deferred item
+     * can succeed, or {@code null} if they aren't known.
+     *
+     * @see DeferScheduler#signal(String)
+     */
+    public Set<String> getDependencies() {
+        Defer cause = getCause();
+
+        return cause != null ? cause.getDependencies() : null;
+    }
+
     public void write(GyroUI ui) {
         ui.write("@|red Error:|@ %s\n", getMessage());
 
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Runs items that may {@link Defer}, retrying each deferred item only once
+ * the resource it was waiting for has been defined.
+ *
+ * <p>Items whose dependencies aren't known, and any items that are still
+ * deferred once nothing else can make progress, are retried all together
+ * like before until a pass doesn't complete any of them.</p>
+ */
+class DeferScheduler<T> {
+
+    private static final ThreadLocal<Deque<DeferScheduler<?>>> ACTIVE = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final List<T> items;
+    private final Defer[] errors;
+    private final boolean[] done;
+    private final Map<String, List<Integer>> waiting = new HashMap<>();
+    private final Set<String> signaled = new LinkedHashSet<>();
+    private TreeSet<Integer> pass = new TreeSet<>();
+    private TreeSet<Integer> nextPass = new TreeSet<>();
+
+    private DeferScheduler(List<T> items) {
+        this.items = items;
+        this.errors = new Defer[items.size()];
+        this.done = new boolean[items.size()];
+    }
+
+    public static <T> void execute(List<T> items, Consumer<T> consumer) {
+        new DeferScheduler<>(items).run(consumer);
+    }
+
+    /**
+     * Signals that the given dependency {@code key} has been defined, so
+     * that the items waiting for it can be retried.
+     */
+    public static void signal(String key) {
+        for (DeferScheduler<?> scheduler : ACTIVE.get()) {
+            scheduler.signaled.add(key);
+        }
+    }
+
+    private void run(Consumer<T> consumer) {
+        Deque<DeferScheduler<?>> active = ACTIVE.get();
+
+        active.push(this);
+
+        try {
+            for (int i = 0, size = items.size(); i < size; ++i) {
+                pass.add(i);
+            }
+
+            boolean full = true;
+
+            while (true) {
+                boolean progress = false;
+
+                for (Integer i; (i = pass.pollFirst()) != null; ) {
+                    progress |= accept(consumer, i);
+                }
+
+                if (!nextPass.isEmpty()) {
+                    pass = nextPass;
+                    nextPass = new TreeSet<>();
+                    full = false;
+                    continue;
+                }
+
+                // Retry everything that's left, like before, which also
+                // covers the items whose dependencies aren't known.
+                List<Defer> remaining = new ArrayList<>();
+
+                for (int i = 0, size = items.size(); i < size; ++i) {
+                    if (!done[i]) {
+                        pass.add(i);
+                        remaining.add(errors[i]);
+                    }
+                }
+
+                if (remaining.isEmpty()) {
+                    return;
+
+                } else if (full && !progress) {
+                    throw new ExecuteDefer(remaining);
+                }
+
+                waiting.clear();
+                full = true;
+            }
+
+        } finally {
+            active.pop();
+        }
+    }
+
+    private boolean accept(Consumer<T> consumer, int index) {
+
+        // Dependencies signaled by an item that didn't complete don't count,
+        // so that a failing item can't keep waking up the others.
+        signaled.clear();
+
+        try {
+            consumer.accept(items.get(index));
+
+        } catch (Defer error) {
+            errors[index] = error;
+            signaled.clear();
+
+            Set<String> dependencies = error.getDependencies();
+
+            if (dependencies != null) {
+                for (String dependency : dependencies) {
+                    waiting.computeIfAbsent(dependency, k -> new ArrayList<>()).add(index);
+                }
+            }
+
+            return false;
+        }
+
+        errors[index] = null;
+        done[index] = true;
+
+        // Items later in the list are retried in the same pass, and the
+        // earlier ones in the next, which is the order they'd run in if
+        // every deferred item was retried.
+        for (String key : new ArrayList<>(signaled)) {
+            List<Integer> indexes = waiting.remove(key);
+
+            if (indexes != null) {
+                for (int i : indexes) {
+                    if (!done[i]) {
+                        (i > index ? pass : nextPass).add(i);
+                    }
+                }
+            }
+        }
+
+        signaled.clear();
+        return true;
+    }
+
+}
@@ -51,6 +51,18 @@ public class DiffableScope extends Scope {
         this.getSettingsByClass().putAll(scope.getSettingsByClass().asMap());
     }
 
+    /**
+     * Returns a copy of this scope under a different {@code parent}.
+     */
+    public DiffableScope copy(Scope parent) {
+        DiffableScope copy = new DiffableScope(parent, block);
+
+        copy.processors.addAll(processors);
+        copy.stateNodes.addAll(stateNodes);
+        copy.getSettingsByClass().putAll(getSettingsByClass().asMap());
+        return copy;
+    }
+
     public BlockNode getBlock() {
         return block;
     }
@@ -38,6 +38,23 @@ class ExecuteDefer extends Defer {
         this.errors = errors;
     }
 
+    @Override
+    public Set<String> getDependencies() {
+        Set<String> dependencies = new LinkedHashSet<>();
+
+        for (Defer error : errors) {
+            Set<String> d = error.getDependencies();
+
+            if (d == null) {
+                return null;
+            }
+
+            dependencies.addAll(d);
+        }
+
+        return dependencies;
+    }
+
     @Override
     public void write(GyroUI ui) {
         List<Defer> flattenedErrors = new ArrayList<>();
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import com.psddev.dari.util.IoUtils;
+import com.psddev.dari.util.Lazy;
+import gyro.core.GyroCore;
+import gyro.lang.GyroCharStream;
+import gyro.lang.ast.Node;
+import gyro.lang.ast.NodeSerializer;
+import gyro.lang.ast.block.FileNode;
+import gyro.parser.antlr4.GyroParser;
+import gyro.util.Bug;
+
+/**
+ * Parsed files stored under {@code .gyro/cache}, keyed by a hash of the file
+ * content and the Gyro version, so that unchanged files skip the parser.
+ *
+ * <p>Entries that haven't been used for {@link #MAX_AGE} are removed the
+ * first time the cache is used in a process.</p>
+ */
+class FileNodeCache {
+
+    public static final String DIRECTORY = ".gyro/cache";
+
+    private static final Duration MAX_AGE = Duration.ofDays(7);
+
+    private static final Lazy<String> VERSION = new Lazy<String>() {
+
+        @Override
+        protected String create() throws IOException {
+            Properties properties = new Properties();
+
+            try (InputStream stream = FileNodeCache.class.getResourceAsStream("/gyro.properties")) {
+                if (stream != null) {
+                    properties.load(stream);
+                }
+            }
+
+            return properties.getProperty("version", "") + "/" + NodeSerializer.FORMAT_VERSION;
+        }
+    };
+
+    private static final Lazy<Path> CACHE_DIRECTORY = new Lazy<Path>() {
+
+        @Override
+        protected Path create() {
+            Path rootDir = GyroCore.getRootDirectory();
+
+            if (rootDir == null) {
+                return null;
+            }
+
+            Path cacheDir = rootDir.resolve(DIRECTORY);
+
+            if (Files.isDirectory(cacheDir)) {
+                Instant expired = Instant.now().minus(MAX_AGE);
+
+                try (Stream<Path> s = Files.list(cacheDir)) {
+                    s.filter(f -> isOlderThan(f, expired)).forEach(FileNodeCache::delete);
+
+                } catch (IOException error) {
+                    // Pruning is best effort.
+                }
+            }
+
+            return cacheDir;
+        }
+    };
+
+    public static FileNode parse(InputStream input, String file) throws IOException {
+        byte[] content = IoUtils.toByteArray(input);
+        Path cacheFile = getCacheFile(content);
+
+        if (cacheFile != null && Files.isRegularFile(cacheFile)) {
+            try (InputStream cached = new BufferedInputStream(Files.newInputStream(cacheFile))) {
+                FileNode node = (FileNode) NodeSerializer.read(
+                    cached,
+                    new GyroCharStream(new ByteArrayInputStream(content), file));
+
+                Files.setLastModifiedTime(cacheFile, FileTime.from(Instant.now()));
+                return node;
+
+            } catch (IOException | RuntimeException error) {
+                // Cache is only an optimization, so parse again if it's corrupt.
+            }
+        }
+
+        FileNode node = (FileNode) Node.parse(new ByteArrayInputStream(content), file, GyroParser::file);
+
+        if (cacheFile != null) {
+            write(node, cacheFile);
+        }
+
+        return node;
+    }
+
+    private static Path getCacheFile(byte[] content) {
+        Path cacheDir = CACHE_DIRECTORY.get();
+
+        if (cacheDir == null) {
+            return null;
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update(VERSION.get().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(content);
+
+            return cacheDir.resolve(String.format("%064x", new BigInteger(1, digest.digest())));
+
+        } catch (NoSuchAlgorithmException error) {
+            throw new Bug(error);
+        }
+    }
+
+    // Written to a temporary file first so that concurrent readers never see
+    // a partial entry.
+    private static void write(FileNode node, Path cacheFile) {
+        Path tempFile = null;
+
+        try {
+            Path cacheDir = cacheFile.getParent();
+
+            Files.createDirectories(cacheDir);
+            tempFile = Files.createTempFile(cacheDir, cacheFile.getFileName().toString(), ".tmp");
+
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                NodeSerializer.write(node, output);
+            }
+
+            Files.move(tempFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+
+        } catch (IOException | RuntimeException error) {
+            // Caching is best effort.
+
+        } finally {
+            if (tempFile != null) {
+                delete(tempFile);
+            }
+        }
+    }
+
+    private static boolean isOlderThan(Path file, Instant instant) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(instant);
+
+        } catch (IOException error) {
+            return false;
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+
+        } catch (IOException error) {
+            // Nothing else to do.
+        }
+    }
+
+}
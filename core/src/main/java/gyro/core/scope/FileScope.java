@@ -16,11 +16,18 @@
 
 package gyro.core.scope;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 import com.google.common.base.Preconditions;
+import gyro.core.resource.Resource;
 
 public class FileScope extends Scope {
 
     private final String file;
+    private final Set<ResourceIndex> indexes = new HashSet<>();
 
     public FileScope(RootScope parent, String file) {
         super(parent);
@@ -32,4 +39,44 @@ public class FileScope extends Scope {
         return file;
     }
 
+    Set<ResourceIndex> getIndexes() {
+        return indexes;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Object oldValue = super.put(key, value);
+
+        for (ResourceIndex index : indexes) {
+            index.replace(this, key, oldValue, value);
+        }
+
+        if (value instanceof Resource) {
+            DeferScheduler.signal(key);
+        }
+
+        return oldValue;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> other) {
+        other.forEach(this::put);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Object oldValue = super.remove(key);
+
+        for (ResourceIndex index : indexes) {
+            index.remove(this, key, oldValue);
+        }
+
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        new ArrayList<>(keySet()).forEach(this::remove);
+    }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * File scopes in a root scope that are added to and removed from its
+ * resource index along with the list.
+ *
+ * <p>File scopes are added far less often than the list is read, and it's
+ * read from other threads while the changes are executed, so it's copied
+ * on write and iterates over a snapshot.</p>
+ */
+class FileScopeList extends AbstractList<FileScope> {
+
+    private final List<FileScope> list = new CopyOnWriteArrayList<>();
+    private final ResourceIndex index;
+
+    public FileScopeList(ResourceIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public FileScope get(int i) {
+        return list.get(i);
+    }
+
+    @Override
+    public int size() {
+        return list.size();
+    }
+
+    @Override
+    public Iterator<FileScope> iterator() {
+        return list.iterator();
+    }
+
+    @Override
+    public FileScope set(int i, FileScope scope) {
+        FileScope oldScope = list.set(i, scope);
+
+        index.remove(oldScope);
+        index.add(scope);
+
+        return oldScope;
+    }
+
+    @Override
+    public void add(int i, FileScope scope) {
+        list.add(i, scope);
+        index.add(scope);
+    }
+
+    @Override
+    public FileScope remove(int i) {
+        FileScope oldScope = list.remove(i);
+
+        index.remove(oldScope);
+
+        return oldScope;
+    }
+
+}
@@ -16,6 +16,9 @@
 
 package gyro.core.scope;
 
+import java.util.Collections;
+import java.util.Set;
+
 import gyro.lang.ast.Node;
 
 class FindDefer extends Defer {
@@ -32,4 +35,9 @@ class FindDefer extends Defer {
         return key;
     }
 
+    @Override
+    public Set<String> getDependencies() {
+        return Collections.singleton(key);
+    }
+
 }
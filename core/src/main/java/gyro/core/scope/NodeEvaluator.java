@@ -18,12 +18,14 @@ package gyro.core.scope;
 
 import java.beans.BeanInfo;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,12 +77,14 @@ import gyro.lang.ast.value.MapNode;
 import gyro.lang.ast.value.ReferenceNode;
 import gyro.lang.ast.value.ValueNode;
 import gyro.lang.filter.Filter;
+import gyro.util.Bug;
 import gyro.util.ImmutableCollectors;
 import org.apache.commons.lang3.math.NumberUtils;
 
 public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeException> {
 
     private Map<String, Set<Node>> typeNodes;
+    private Map<Node, Set<String>> nodeTypes;
     private List<Node> body;
 
     private static final LoadingCache<Class<? extends DirectiveProcessor>, Class<? extends Scope>> DIRECTIVE_PROCESSOR_SCOPE_CLASSES = CacheBuilder
@@ -95,6 +99,27 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
             }
         });
 
+    // Resolved once per class and key since property access is evaluated
+    // repeatedly in loops and interpolated strings. Kept in a ClassValue
+    // instead of a weak-keyed map because the method handles refer to the
+    // class, so they'd keep the key, and its class loader, from being
+    // collected.
+    private static final ClassValue<LoadingCache<String, Optional<MethodHandle>>> PROPERTY_GETTERS
+        = new ClassValue<LoadingCache<String, Optional<MethodHandle>>>() {
+
+            @Override
+            protected LoadingCache<String, Optional<MethodHandle>> computeValue(Class<?> aClass) {
+                return CacheBuilder.newBuilder()
+                    .build(new CacheLoader<String, Optional<MethodHandle>>() {
+
+                        @Override
+                        public Optional<MethodHandle> load(String key) {
+                            return findPropertyGetter(aClass, key);
+                        }
+                    });
+            }
+        };
+
     private static final Map<String, BiFunction<Object, Object, Object>> BINARY_FUNCTIONS = ImmutableMap.<String, BiFunction<Object, Object, Object>>builder()
         .put("*", (l, r) -> doArithmetic(l, r, (ld, rd) -> ld * rd, (ll, rl) -> ll * rl))
         .put("/", (l, r) -> doArithmetic(l, r, (ld, rd) -> ld / rd, (ll, rl) -> ll / rl))
@@ -276,10 +301,40 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
         }
 
         Class<?> aClass = object.getClass();
+
+        MethodHandle getter = PROPERTY_GETTERS.get(aClass)
+            .getUnchecked(key)
+            .orElseThrow(() -> {
+                if (object instanceof Diffable) {
+                    return new GyroException(node, String.format(
+                        "Can't find the @|bold %s|@ field or property in the @|bold %s|@ type!",
+                        key,
+                        DiffableType.getInstance((Diffable) object).getName()));
+
+                } else {
+                    return new GyroException(node, String.format(
+                        "Can't find the @|bold %s|@ property in the @|bold %s|@ class!",
+                        key,
+                        aClass.getName()));
+                }
+            });
+
+        try {
+            return getter.invokeExact(object);
+
+        } catch (RuntimeException | Error error) {
+            throw error;
+
+        } catch (Throwable error) {
+            throw new GyroException(error);
+        }
+    }
+
+    private static Optional<MethodHandle> findPropertyGetter(Class<?> aClass, String key) {
         BeanInfo info = Reflections.getBeanInfo(aClass);
         String methodName = CaseFormat.LOWER_HYPHEN.to(CaseFormat.LOWER_CAMEL, key);
 
-        Method method = Stream.of(info.getPropertyDescriptors())
+        Optional<Method> method = Optional.ofNullable(Stream.of(info.getPropertyDescriptors())
             .filter(p -> p.getName().equals(methodName))
             .map(PropertyDescriptor::getReadMethod)
             .filter(Objects::nonNull)
@@ -289,22 +344,20 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
                 .filter(m -> m.getParameterCount() == 0)
                 .filter(m -> !m.getReturnType().equals(void.class))
                 .findFirst()
-                .orElseThrow(() -> {
-                    if (object instanceof Diffable) {
-                        return new GyroException(node, String.format(
-                            "Can't find the @|bold %s|@ field or property in the @|bold %s|@ type!",
-                            key,
-                            DiffableType.getInstance((Diffable) object).getName()));
+                .orElse(null)));
 
-                    } else {
-                        return new GyroException(node, String.format(
-                            "Can't find the @|bold %s|@ property in the @|bold %s|@ class!",
-                            key,
-                            aClass.getName()));
-                    }
-                }));
+        return method.map(m -> {
+            try {
+                m.setAccessible(true);
+
+                return MethodHandles.lookup()
+                    .unreflect(m)
+                    .asType(MethodType.methodType(Object.class, Object.class));
 
-        return Reflections.invoke(method, object);
+            } catch (IllegalAccessException error) {
+                throw new Bug(error);
+            }
+        });
     }
 
     public List<Node> getBody() {
@@ -313,6 +366,7 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
 
     public void evaluate(RootScope root, List<Node> body) {
         this.typeNodes = new HashMap<>();
+        this.nodeTypes = new HashMap<>();
         this.body = body;
 
         body.stream()
@@ -327,7 +381,10 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
 
     public void addTypeNode(Node top, Node node) {
         if (node instanceof ResourceNode) {
-            typeNodes.computeIfAbsent(((ResourceNode) node).getType(), k -> new HashSet<>()).add(top);
+            String type = ((ResourceNode) node).getType();
+
+            typeNodes.computeIfAbsent(type, k -> new HashSet<>()).add(top);
+            nodeTypes.computeIfAbsent(top, k -> new HashSet<>()).add(type);
         }
 
         if (node instanceof BlockNode) {
@@ -341,15 +398,30 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
         Defer.execute(body, i -> visit(i, scope));
     }
 
-    private void removeTypeNode(Node node) {
-        if (typeNodes != null) {
-            for (Iterator<Set<Node>> i = typeNodes.values().iterator(); i.hasNext(); ) {
-                Set<Node> nodes = i.next();
+    /**
+     * Returns {@code true} if there are nodes that define resources of the
+     * given {@code type} that haven't been evaluated yet.
+     */
+    boolean hasTypeNodes(String type) {
+        return typeNodes != null && typeNodes.containsKey(type);
+    }
+
+    // Uses the reverse index so that it doesn't have to go through every
+    // type, since it's called for every node that's visited.
+    void removeTypeNode(Node node) {
+        if (nodeTypes != null) {
+            Set<String> types = nodeTypes.remove(node);
+
+            if (types != null) {
+                for (String type : types) {
+                    Set<Node> nodes = typeNodes.get(type);
 
-                nodes.remove(node);
+                    nodes.remove(node);
 
-                if (nodes.isEmpty()) {
-                    i.remove();
+                    if (nodes.isEmpty()) {
+                        typeNodes.remove(type);
+                        DeferScheduler.signal(WildcardDefer.getTypeKey(type));
+                    }
                 }
             }
         }
@@ -744,20 +816,11 @@ public class NodeEvaluator implements NodeVisitor<Scope, Object, RuntimeExceptio
         Object value = null;
 
         if (resourceName.endsWith("*")) {
-            if (typeNodes != null && typeNodes.containsKey(referenceName)) {
+            if (hasTypeNodes(referenceName)) {
                 throw new WildcardDefer(node, referenceName);
             }
 
-            Stream<Resource> s = root.findResources()
-                .stream()
-                .filter(r -> referenceName.equals(DiffableType.getInstance(r.getClass()).getName()));
-
-            if (!resourceName.equals("*")) {
-                String prefix = resourceName.substring(0, resourceName.length() - 1);
-                s = s.filter(r -> DiffableInternals.getName(r).startsWith(prefix));
-            }
-
-            value = s.collect(Collectors.toList());
+            value = root.findResourcesByPrefix(referenceName, resourceName.substring(0, resourceName.length() - 1));
 
         } else {
             Resource resource = root.findResource(referenceName + "::" + resourceName);
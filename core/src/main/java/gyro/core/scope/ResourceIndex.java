@@ -0,0 +1,340 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import gyro.core.resource.DiffableField;
+import gyro.core.resource.DiffableType;
+import gyro.core.resource.Resource;
+
+/**
+ * Resources in a root scope and its file scopes, indexed by key, class,
+ * name and ID so that they can be found without going through every scope.
+ *
+ * <p>File scopes keep the index up to date as their values change. The
+ * methods are synchronized since resources are looked up while other
+ * threads change the file scopes in the same root, but a single file scope
+ * still shouldn't be changed concurrently.</p>
+ */
+class ResourceIndex {
+
+    private final RootScope root;
+    private final Map<String, Map<FileScope, Resource>> resourcesByKey = new LinkedHashMap<>();
+    private final Map<FileScope, Map<String, Resource>> resourcesByScope = new IdentityHashMap<>();
+    private final Map<Class<?>, Map<String, Resource>> resourcesByClass = new LinkedHashMap<>();
+    private final NavigableMap<String, Map<FileScope, Resource>> resourcesByPrimaryKey = new TreeMap<>();
+    private final Map<String, Long> sequencesByPrimaryKey = new HashMap<>();
+    private final Map<Class<?>, Map<Object, Map<String, Resource>>> resourcesById = new LinkedHashMap<>();
+    private final Map<Class<?>, Map<String, Resource>> resourcesWithoutId = new LinkedHashMap<>();
+    private long nextSequence;
+
+    public ResourceIndex(RootScope root) {
+        this.root = root;
+    }
+
+    public synchronized void add(FileScope scope) {
+        scope.getIndexes().add(this);
+        scope.forEach((key, value) -> put(scope, key, value));
+    }
+
+    public synchronized void remove(FileScope scope) {
+        scope.getIndexes().remove(this);
+        scope.forEach((key, value) -> remove(scope, key, value));
+    }
+
+    /**
+     * Replaces the given {@code oldValue} with the given {@code value}
+     * without changing the order of the key in the index.
+     */
+    public synchronized void replace(FileScope scope, String key, Object oldValue, Object value) {
+        put(scope, key, value);
+
+        if (oldValue != value) {
+            remove(scope, key, oldValue);
+        }
+    }
+
+    public synchronized void put(FileScope scope, String key, Object value) {
+        if (!(value instanceof Resource)) {
+            return;
+        }
+
+        Resource resource = (Resource) value;
+
+        resourcesByKey.computeIfAbsent(key, k -> new IdentityHashMap<>()).put(scope, resource);
+
+        if (resource.primaryKey().equals(key)) {
+            resourcesByScope.computeIfAbsent(scope, s -> new LinkedHashMap<>()).put(key, resource);
+            resourcesByClass.computeIfAbsent(resource.getClass(), c -> new LinkedHashMap<>()).put(key, resource);
+            resourcesByPrimaryKey.computeIfAbsent(key, k -> new IdentityHashMap<>()).put(scope, resource);
+            sequencesByPrimaryKey.computeIfAbsent(key, k -> nextSequence++);
+            putId(resource);
+        }
+    }
+
+    private void putId(Resource resource) {
+        DiffableField idField = DiffableType.getInstance(resource.getClass()).getIdField();
+
+        if (idField == null) {
+            return;
+        }
+
+        Object id = idField.getValue(resource);
+
+        if (id != null) {
+            resourcesById.computeIfAbsent(resource.getClass(), c -> new LinkedHashMap<>())
+                .computeIfAbsent(id, i -> new LinkedHashMap<>())
+                .put(resource.primaryKey(), resource);
+
+        } else {
+            resourcesWithoutId.computeIfAbsent(resource.getClass(), c -> new LinkedHashMap<>())
+                .put(resource.primaryKey(), resource);
+        }
+    }
+
+    // Removed by identity since the primary key may have changed since the
+    // resource was indexed.
+    private void removeId(Resource resource, Object id) {
+        Map<Object, Map<String, Resource>> classResources = resourcesById.get(resource.getClass());
+
+        if (classResources == null) {
+            return;
+        }
+
+        Map<String, Resource> resources = classResources.get(id);
+
+        if (resources != null && resources.values().removeIf(r -> r == resource) && resources.isEmpty()) {
+            classResources.remove(id);
+
+            if (classResources.isEmpty()) {
+                resourcesById.remove(resource.getClass());
+            }
+        }
+    }
+
+    public synchronized void remove(FileScope scope, Object key, Object value) {
+        if (!(value instanceof Resource)) {
+            return;
+        }
+
+        removeSame(resourcesByKey, key, scope, value);
+        removeSame(resourcesByScope, scope, key, value);
+        removeSame(resourcesByClass, value.getClass(), key, value);
+        removeSame(resourcesByPrimaryKey, key, scope, value);
+        removeSame(resourcesWithoutId, value.getClass(), key, value);
+
+        Resource resource = (Resource) value;
+        DiffableField idField = DiffableType.getInstance(resource.getClass()).getIdField();
+
+        if (idField != null) {
+            Optional.ofNullable(idField.getValue(resource)).ifPresent(id -> removeId(resource, id));
+        }
+
+        if (!resourcesByPrimaryKey.containsKey(key)) {
+            sequencesByPrimaryKey.remove(key);
+        }
+    }
+
+    // Removes the value only if it's the same instance, and the inner map
+    // along with it once it's empty.
+    private void removeSame(Map<?, ? extends Map<?, Resource>> map, Object key, Object innerKey, Object value) {
+        Map<?, Resource> resources = map.get(key);
+
+        if (resources != null && resources.get(innerKey) == value) {
+            resources.remove(innerKey);
+
+            if (resources.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the resource with the given {@code key} in the first scope
+     * that has one, looking at the root scope before the file scopes.
+     */
+    public synchronized Resource find(String key) {
+        Map<FileScope, Resource> resources = resourcesByKey.get(key);
+
+        if (resources == null) {
+            return null;
+
+        } else if (resources.size() == 1) {
+            return resources.values().iterator().next();
+
+        } else {
+            return Stream.concat(Stream.of(root), root.getFileScopes().stream())
+                .map(resources::get)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(null);
+        }
+    }
+
+    public synchronized Collection<Resource> findByScope(FileScope scope) {
+        Map<String, Resource> resources = resourcesByScope.get(scope);
+
+        return resources != null ? new ArrayList<>(resources.values()) : Collections.emptyList();
+    }
+
+    public synchronized List<Resource> findByClass(Class<?> resourceClass) {
+        List<Resource> resources = new ArrayList<>();
+
+        resourcesByClass.forEach((c, r) -> {
+            if (resourceClass.isAssignableFrom(c)) {
+                resources.addAll(r.values());
+            }
+        });
+
+        return resources;
+    }
+
+    /**
+     * Returns the resources of the given {@code type} whose names start with
+     * the given {@code prefix}, in the order that they were defined.
+     */
+    public synchronized List<Resource> findByPrefix(String type, String prefix) {
+        String keyPrefix = type + "::" + prefix;
+        List<String> keys = new ArrayList<>();
+
+        // Sorted by key to find the matches quickly, and then by the order
+        // that the keys were first put in.
+        for (String key : resourcesByPrimaryKey.tailMap(keyPrefix, true).keySet()) {
+            if (!key.startsWith(keyPrefix)) {
+                break;
+            }
+
+            keys.add(key);
+        }
+
+        keys.sort(Comparator.comparing(sequencesByPrimaryKey::get));
+
+        List<Resource> resources = new ArrayList<>();
+
+        for (String key : keys) {
+            Map<FileScope, Resource> scopeResources = resourcesByPrimaryKey.get(key);
+
+            Stream.concat(Stream.of(root), root.getFileScopes().stream())
+                .map(scopeResources::get)
+                .filter(Objects::nonNull)
+                .filter(r -> type.equals(DiffableType.getInstance(r.getClass()).getName()))
+                .forEach(resources::add);
+        }
+
+        return resources;
+    }
+
+    // IDs are usually only known after the resources are created, so the
+    // resources that didn't have one when they were put are checked again
+    // on a miss. Hits are checked again in case the resource or its ID
+    // changed since it was indexed.
+    public synchronized Resource findById(Class<?> resourceClass, DiffableField idField, Object id) {
+        List<Resource> stale = new ArrayList<>();
+        Resource found = null;
+
+        for (Map.Entry<Class<?>, Map<Object, Map<String, Resource>>> entry : resourcesById.entrySet()) {
+            if (!resourceClass.isAssignableFrom(entry.getKey())) {
+                continue;
+            }
+
+            Map<String, Resource> resources = entry.getValue().get(id);
+
+            if (resources == null) {
+                continue;
+            }
+
+            for (Resource r : resources.values()) {
+                if (!isCurrent(r) || !id.equals(idField.getValue(r))) {
+                    stale.add(r);
+
+                } else if (found == null) {
+                    found = r;
+                }
+            }
+        }
+
+        // Indexed again under their current IDs, or dropped if they're no
+        // longer in the index.
+        for (Resource r : stale) {
+            removeId(r, id);
+
+            if (isCurrent(r)) {
+                putId(r);
+            }
+        }
+
+        if (found != null) {
+            return found;
+        }
+
+        for (Map.Entry<Class<?>, Map<String, Resource>> entry : new ArrayList<>(resourcesWithoutId.entrySet())) {
+            if (!resourceClass.isAssignableFrom(entry.getKey())) {
+                continue;
+            }
+
+            for (Iterator<Resource> i = entry.getValue().values().iterator(); i.hasNext(); ) {
+                Resource r = i.next();
+
+                if (!isCurrent(r)) {
+                    i.remove();
+                    continue;
+                }
+
+                Object rId = idField.getValue(r);
+
+                if (rId != null) {
+                    i.remove();
+                    putId(r);
+
+                    if (found == null && id.equals(rId)) {
+                        found = r;
+                    }
+                }
+            }
+
+            if (entry.getValue().isEmpty()) {
+                resourcesWithoutId.remove(entry.getKey());
+            }
+        }
+
+        return found;
+    }
+
+    // Resources can be found by ID only while they're the one indexed under
+    // their current primary key.
+    private boolean isCurrent(Resource resource) {
+        Map<String, Resource> classResources = resourcesByClass.get(resource.getClass());
+
+        return classResources != null && classResources.get(resource.primaryKey()) == resource;
+    }
+
+}
@@ -17,24 +17,37 @@
 package gyro.core.scope;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Consumer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.psddev.dari.util.Converter;
+import com.psddev.dari.util.IoUtils;
 import gyro.core.FileBackend;
+import gyro.core.GyroCore;
 import gyro.core.GyroException;
 import gyro.core.GyroInputStream;
 import gyro.core.GyroOutputStream;
+import gyro.core.GyroUI;
 import gyro.core.LogDirectiveProcessor;
 import gyro.core.PrintDirectiveProcessor;
 import gyro.core.audit.AuditorDirectiveProcessor;
@@ -46,6 +59,7 @@ import gyro.core.auth.UsesCredentialsDirectiveProcessor;
 import gyro.core.backend.FileBackendDirectiveProcessor;
 import gyro.core.backend.FileBackendPlugin;
 import gyro.core.command.HighlanderDirectiveProcessor;
+import gyro.core.command.RefreshRateLimitDirectiveProcessor;
 import gyro.core.command.HighlanderSettings;
 import gyro.core.control.ForDirectiveProcessor;
 import gyro.core.control.IfDirectiveProcessor;
@@ -63,6 +77,7 @@ import gyro.core.preprocessor.PreprocessorSettings;
 import gyro.core.reference.FinderReferenceResolver;
 import gyro.core.reference.ReferencePlugin;
 import gyro.core.reference.ReferenceSettings;
+import gyro.core.reference.ResourceReference;
 import gyro.core.repo.RepositoryDirectiveProcessor;
 import gyro.core.resource.DescriptionDirectiveProcessor;
 import gyro.core.resource.Diffable;
@@ -97,12 +112,19 @@ import org.apache.commons.lang3.StringUtils;
 
 public class RootScope extends FileScope {
 
+    // Keyed by the backend, the name, and the content of the init file, which
+    // are usually the same for every root scope in a process.
+    private static final Cache<String, List<Node>> INITS = CacheBuilder.newBuilder()
+        .maximumSize(16)
+        .build();
+
     private final Converter converter;
     private final NodeEvaluator evaluator;
     private final FileBackend backend;
     private final RootScope current;
     private final Set<String> loadFiles;
-    private final List<FileScope> fileScopes = new ArrayList<>();
+    private final ResourceIndex index = new ResourceIndex(this);
+    private final List<FileScope> fileScopes = new FileScopeList(index);
 
     public RootScope(String file, FileBackend backend, RootScope current, Set<String> loadFiles) {
         super(null, file);
@@ -121,6 +143,8 @@ public class RootScope extends FileScope {
         this.current = current;
         this.loadFiles = loadFiles != null ? ImmutableSet.copyOf(loadFiles) : ImmutableSet.of();
 
+        index.add(this);
+
         Stream.of(
             new PluginPreprocessor())
             .forEach(p -> getSettings(PreprocessorSettings.class).getPreprocessors().add(p));
@@ -159,6 +183,7 @@ public class RootScope extends FileScope {
             MetadataDirectiveProcessor.class,
             PluginDirectiveProcessor.class,
             PrintDirectiveProcessor.class,
+            RefreshRateLimitDirectiveProcessor.class,
             ReplaceDirectiveProcessor.class,
             RepositoryDirectiveProcessor.class,
             TypeDescriptionDirectiveProcessor.class,
@@ -218,6 +243,20 @@ public class RootScope extends FileScope {
         return new GyroOutputStream(backend, file);
     }
 
+    /**
+     * @return {@code null} if the backend doesn't support appending.
+     */
+    public OutputStream openAppendOutput(String file) {
+        try {
+            return backend.openAppendOutput(file);
+
+        } catch (Exception error) {
+            throw new GyroException(
+                String.format("Can't open @|bold %s|@ in @|bold %s|@ for appending!", file, backend),
+                error);
+        }
+    }
+
     public void delete(String file) {
         try {
             backend.delete(file);
@@ -239,12 +278,8 @@ public class RootScope extends FileScope {
 
     public List<Resource> findResourcesIn(Set<String> diffFiles) {
         Stream<Resource> stream = Stream.concat(Stream.of(this), getFileScopes().stream())
-            .map(Map::entrySet)
-            .flatMap(Collection::stream)
-            .filter(e -> e.getValue() instanceof Resource)
-            .filter(e -> ((Resource) e.getValue()).primaryKey().equals(e.getKey()))
-            .map(Entry::getValue)
-            .map(Resource.class::cast);
+            .map(index::findByScope)
+            .flatMap(Collection::stream);
 
         if (diffFiles != null && !diffFiles.isEmpty()) {
             stream = stream.filter(r -> diffFiles.contains(DiffableInternals.getScope(r).getFileScope().getFile()));
@@ -253,20 +288,47 @@ public class RootScope extends FileScope {
         return stream.collect(Collectors.toList());
     }
 
+    /**
+     * Finds the resource references in the given {@code files} without
+     * evaluating them.
+     *
+     * @param files Nonnull. Files that don't exist are ignored.
+     * @return Never {@code null}.
+     */
+    public Set<ResourceReference> findReferencesIn(Set<String> files) {
+        Set<String> existingFiles;
+
+        try (Stream<String> s = list()) {
+            existingFiles = s.collect(Collectors.toSet());
+        }
+
+        Set<ResourceReference> references = new LinkedHashSet<>();
+
+        files.stream()
+            .filter(existingFiles::contains)
+            .map(this::parseFile)
+            .filter(Objects::nonNull)
+            .forEach(n -> references.addAll(ResourceReference.find(n.getBody())));
+
+        return references;
+    }
+
     public <T extends Resource> Stream<T> findResourcesByClass(Class<T> resourceClass) {
-        return findResources()
+        return index.findByClass(resourceClass)
             .stream()
-            .filter(resourceClass::isInstance)
             .map(resourceClass::cast);
     }
 
     public Resource findResource(String name) {
-        return Stream.concat(Stream.of(this), getFileScopes().stream())
-            .map(s -> s.get(name))
-            .filter(Resource.class::isInstance)
-            .map(Resource.class::cast)
-            .findFirst()
-            .orElse(null);
+        return index.find(name);
+    }
+
+    /**
+     * Returns the resources of the given {@code type} whose names start with
+     * the given {@code prefix}, in the order that they were defined.
+     */
+    public List<Resource> findResourcesByPrefix(String type, String prefix) {
+        return index.findByPrefix(type, prefix);
     }
 
     public <T extends Resource> T findResourceById(Class<T> resourceClass, Object id) {
@@ -283,16 +345,42 @@ public class RootScope extends FileScope {
                 resourceClass.getSimpleName()));
         }
 
-        return findResourcesByClass(resourceClass)
-            .filter(r -> id.equals(idField.getValue(r)))
-            .findFirst()
+        return Optional.ofNullable(index.findById(resourceClass, idField, id))
+            .map(resourceClass::cast)
             .orElseGet(() -> type.newExternal(this, id));
     }
 
+    /**
+     * Evaluates the init file, reusing its parsed nodes if the same init file
+     * was already loaded in this process.
+     *
+     * <p>Only the nodes are shared, so each root scope evaluates them into its
+     * own settings. Plugin resolution is already cached for the whole
+     * process, so preprocessing the nodes again is cheap.</p>
+     *
+     * @return Nodes in the init file, which are evaluated again along with
+     * the rest of the files.
+     */
     public List<Node> load() {
+        String file = getFile();
+        String content = readFile(file);
         List<Node> nodes = new ArrayList<>();
 
-        evaluateFile(getFile(), node -> nodes.addAll(node.getBody()));
+        if (content != null) {
+            String key = backend + "\0" + file + "\0" + content;
+            List<Node> body = INITS.getIfPresent(key);
+
+            if (body == null) {
+                body = Optional.ofNullable(parseFile(file))
+                    .map(FileNode::getBody)
+                    .map(ImmutableList::copyOf)
+                    .orElseGet(ImmutableList::of);
+
+                INITS.put(key, body);
+            }
+
+            nodes.addAll(body);
+        }
 
         List<Node> finalNodes = nodes;
         try {
@@ -309,6 +397,13 @@ public class RootScope extends FileScope {
     }
 
     public void evaluate() {
+
+        // State roots don't have a current root, and may have changes that
+        // haven't been compacted from the journal yet.
+        if (current == null) {
+            State.replayJournal(this);
+        }
+
         List<Node> nodes = load();
         Set<String> existingFiles;
 
@@ -328,11 +423,19 @@ public class RootScope extends FileScope {
             } else {
                 Optional.of(loadFiles.iterator().next())
                     .filter(existingFiles::contains)
-                    .ifPresent(f -> evaluateFile(f, nodes::add));
+                    .map(this::parseFile)
+                    .ifPresent(nodes::add);
             }
 
         } else {
-            existingFiles.forEach(f -> evaluateFile(f, nodes::add));
+            // Files are independent of each other so they can be parsed
+            // concurrently, but they're still evaluated in the listed order.
+            existingFiles.parallelStream()
+                .map(this::parseFile)
+                .collect(Collectors.toList())
+                .stream()
+                .filter(Objects::nonNull)
+                .forEach(nodes::add);
         }
 
         evaluator.evaluate(this, nodes);
@@ -349,13 +452,36 @@ public class RootScope extends FileScope {
         });
     }
 
-    private void evaluateFile(String file, Consumer<FileNode> consumer) {
+    private String readFile(String file) {
         if (StringUtils.isBlank(file)) {
-            return;
+            return null;
         }
 
         try (GyroInputStream input = openInput(file)) {
-            consumer.accept((FileNode) Node.parse(input, file, GyroParser::file));
+            return IoUtils.toString(input, StandardCharsets.UTF_8);
+
+        } catch (IOException error) {
+            throw new Bug(error);
+
+        } catch (Exception error) {
+            throw new GyroException(
+                String.format("Can't read @|bold %s|@ in @|bold %s|@!", file, this.backend),
+                error);
+        }
+    }
+
+    private FileNode parseFile(String file) {
+        if (StringUtils.isBlank(file)) {
+            return null;
+        }
+
+        try (GyroInputStream input = openInput(file)) {
+
+            // State files change on every run, so caching them would only
+            // fill the cache with entries that are never read again.
+            return current != null
+                ? FileNodeCache.parse(input, file)
+                : (FileNode) Node.parse(input, file, GyroParser::file);
 
         } catch (IOException error) {
             throw new Bug(error);
@@ -379,14 +505,129 @@ public class RootScope extends FileScope {
             throw new GyroException(sb.toString());
         }
 
-        List<ValidationError> errors = findResources().stream()
-            .map(r -> DiffableType.getInstance(r).validate(r))
-            .flatMap(List::stream)
-            .collect(Collectors.toList());
+        List<ValidationError> errors = validateResources(findResources());
 
         if (!errors.isEmpty()) {
             throw new ValidationErrorException(errors);
         }
     }
 
+    // Resources are validated independently of each other in a pool that's
+    // set up like the calling thread, since validators may use the UI or
+    // load plugin classes. The errors are collected in the same order as the
+    // resources.
+    private List<ValidationError> validateResources(List<Resource> resources) {
+        return validateResources(resources, Runtime.getRuntime().availableProcessors());
+    }
+
+    List<ValidationError> validateResources(List<Resource> resources, int parallelism) {
+        parallelism = Math.min(parallelism, resources.size());
+
+        if (parallelism <= 1) {
+            return resources.stream()
+                .map(r -> DiffableType.getInstance(r).validate(r))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        }
+
+        GyroUI ui = GyroCore.ui();
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        List<Callable<List<ValidationError>>> tasks = new ArrayList<>();
+
+        for (Resource resource : resources) {
+            tasks.add(() -> {
+                Thread thread = Thread.currentThread();
+                ClassLoader oldLoader = thread.getContextClassLoader();
+
+                GyroCore.pushUi(ui);
+                thread.setContextClassLoader(loader);
+
+                try {
+                    return DiffableType.getInstance(resource).validate(resource);
+
+                } finally {
+                    thread.setContextClassLoader(oldLoader);
+                    GyroCore.popUi();
+                }
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<ValidationError> errors = new ArrayList<>();
+
+        try {
+            for (Future<List<ValidationError>> future : pool.invokeAll(tasks)) {
+                errors.addAll(future.get());
+            }
+
+        } catch (ExecutionException error) {
+            Throwable cause = error.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+
+            } else {
+                throw new GyroException(cause);
+            }
+
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new GyroException("Interrupted while validating resources!", error);
+
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return errors;
+    }
+
+    /**
+     * Returns a copy of this evaluated scope that can be changed without
+     * affecting this one, without reading and evaluating the files again.
+     *
+     * <p>Resources in the file scopes are copied, and references between
+     * them point to the copies. Settings are shared.</p>
+     */
+    public RootScope snapshot() {
+        return snapshot(fileScopes);
+    }
+
+    /**
+     * Returns a copy of this evaluated scope like {@link #snapshot()}, but
+     * with the resources in the given {@code fileScopes} instead of its own.
+     *
+     * @param fileScopes Can't be {@code null}.
+     */
+    public RootScope snapshot(Collection<FileScope> fileScopes) {
+        RootScope snapshot = new RootScope(getFile(), backend, current, loadFiles);
+        Map<Diffable, Diffable> copies = new IdentityHashMap<>();
+
+        snapshot.getSettingsByClass().putAll(getSettingsByClass().asMap());
+        snapshot.putAll(this);
+
+        for (FileScope fileScope : fileScopes) {
+            FileScope fileSnapshot = new FileScope(snapshot, fileScope.getFile());
+
+            for (Map.Entry<String, Object> entry : fileScope.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+
+                if (value instanceof Resource) {
+                    value = DiffableInternals.snapshot((Resource) value, fileSnapshot, copies);
+                }
+
+                fileSnapshot.put(key, value);
+                fileSnapshot.putLocation(key, fileScope.getLocation(key));
+            }
+
+            snapshot.getFileScopes().add(fileSnapshot);
+        }
+
+        DiffableInternals.replaceReferences(copies);
+        return snapshot;
+    }
+
 }
@@ -21,22 +21,31 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.psddev.dari.util.IoUtils;
+import com.psddev.dari.util.ObjectUtils;
 import gyro.core.GyroException;
+import gyro.core.GyroInputStream;
 import gyro.core.diff.Change;
 import gyro.core.diff.Delete;
 import gyro.core.diff.Replace;
@@ -49,30 +58,61 @@ import gyro.lang.ast.Node;
 import gyro.lang.ast.NodePrinter;
 import gyro.lang.ast.PairNode;
 import gyro.lang.ast.PrinterContext;
+import gyro.lang.ast.block.FileNode;
 import gyro.lang.ast.block.KeyBlockNode;
 import gyro.lang.ast.block.ResourceNode;
 import gyro.lang.ast.value.ListNode;
 import gyro.lang.ast.value.MapNode;
 import gyro.lang.ast.value.ReferenceNode;
 import gyro.lang.ast.value.ValueNode;
+import gyro.parser.antlr4.GyroParser;
 import gyro.util.Bug;
 
 public class State {
 
+    public static final String JOURNAL_FILE = "state-journal.jsonl";
+
+    private static final int JOURNAL_COMPACT_SIZE = 100;
+
     private final RootScope root;
     private final boolean test;
+    private final int parallelism;
     private final Map<String, FileScope> states = new HashMap<>();
     private final Map<String, String> newNames = new HashMap<>();
+    private final Map<String, String> newKeys = new HashMap<>();
+    private final Set<String> dirtyFiles = new HashSet<>();
+    private final Set<Object> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<String, Map<String, Node>> stateNodes = new HashMap<>();
+    private final Map<String, JournalEntry> journalEntries = new LinkedHashMap<>();
+    private boolean journal = true;
+    private int journalSize;
 
     public State(RootScope current, RootScope pending, boolean test) {
-        this.root = new RootScope(current.getFile(), current.getBackend(), null, current.getLoadFiles());
-
-        root.evaluate();
+        this(current, pending, test, 1);
+    }
 
+    /**
+     * @param parallelism Maximum number of changes to execute concurrently.
+     */
+    public State(RootScope current, RootScope pending, boolean test, int parallelism) {
+        this.root = new RootScope(current.getFile(), current.getBackend(), null, current.getLoadFiles());
         this.test = test;
+        this.parallelism = parallelism;
+
+        // Starts out sharing the resources that were already evaluated from
+        // the state files instead of reading them again. Shared resources are
+        // copied before they're changed in place.
+        for (FileScope currentState : current.getFileScopes()) {
+            FileScope state = new FileScope(root, currentState.getFile());
 
-        for (FileScope state : root.getFileScopes()) {
+            state.putAll(currentState);
+            root.getFileScopes().add(state);
             states.put(state.getFile(), state);
+
+            currentState.values()
+                .stream()
+                .filter(Resource.class::isInstance)
+                .forEach(shared::add);
         }
 
         for (FileScope state : pending.getFileScopes()) {
@@ -84,11 +124,34 @@ public class State {
         }
     }
 
+    /**
+     * Returns a copy of the resources as they are in the state now, along
+     * with the settings from the given evaluated {@code current} scope.
+     *
+     * @param current Can't be {@code null}.
+     */
+    public synchronized RootScope snapshot(RootScope current) {
+        List<FileScope> fileScopes = new ArrayList<>(root.getFileScopes());
+        Set<String> files = fileScopes.stream().map(FileScope::getFile).collect(Collectors.toSet());
+
+        states.values()
+            .stream()
+            .filter(s -> !files.contains(s.getFile()))
+            .sorted(Comparator.comparing(FileScope::getFile))
+            .forEach(fileScopes::add);
+
+        return current.snapshot(fileScopes);
+    }
+
     public boolean isTest() {
         return test;
     }
 
-    public void update(Change change) {
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public synchronized void update(Change change) {
         if (change instanceof Replace) {
             return;
         }
@@ -106,25 +169,34 @@ public class State {
         if (change instanceof Delete) {
             if (typeRoot) {
                 String key = resource.primaryKey();
-                states.values().forEach(s -> s.remove(key));
+
+                for (FileScope state : states.values()) {
+                    if (state.remove(key) != null) {
+                        markDirty(state.getFile(), key, null);
+                    }
+                }
 
             } else {
-                states.values()
-                    .stream()
-                    .flatMap(s -> s.values().stream())
-                    .filter(Resource.class::isInstance)
-                    .map(Resource.class::cast)
-                    .filter(r -> r.equals(resource.parentResource()))
-                    .forEach(r -> updateSubresource(r, resource, true));
+                Resource parent = resource.parentResource();
+                String parentKey = parent.primaryKey();
+
+                for (FileScope state : states.values()) {
+                    if (parent.equals(state.get(parentKey))) {
+                        updateSubresource(copyOnWrite(state, parentKey), resource, true);
+                        markDirty(state.getFile(), parentKey, state.getFile());
+                    }
+                }
             }
 
         } else {
             FileScope state = states.get(DiffableInternals.getScope(resource).getFileScope().getFile());
+            String file = state.getFile();
 
             if (typeRoot) {
                 String key = resource.primaryKey();
 
                 state.put(key, resource);
+                markDirty(file, key, file);
 
                 Resource oldResource = state.getRootScope().findResource(key);
 
@@ -133,16 +205,44 @@ public class State {
 
                     if (state != oldState) {
                         oldState.remove(key);
+                        markDirty(oldState.getFile(), key, file);
                     }
                 }
 
             } else {
                 String key = resource.parentResource().primaryKey();
-                updateSubresource((Resource) state.get(key), resource, false);
+
+                updateSubresource(copyOnWrite(state, key), resource, false);
+                markDirty(file, key, file);
             }
         }
     }
 
+    /**
+     * @param file State file that was changed.
+     * @param key Key of the root resource that was changed.
+     * @param targetFile State file that the resource is in now, or {@code null} if it was deleted.
+     */
+    private void markDirty(String file, String key, String targetFile) {
+        JournalEntry entry = journalEntries.computeIfAbsent(key, k -> new JournalEntry());
+
+        entry.files.add(file);
+        entry.targetFile = targetFile;
+        dirtyFiles.add(file);
+    }
+
+    private Resource copyOnWrite(FileScope state, String key) {
+        Resource resource = (Resource) state.get(key);
+
+        if (resource != null && shared.remove(resource)) {
+            resource = DiffableInternals.copy(resource);
+
+            state.put(key, resource);
+        }
+
+        return resource;
+    }
+
     private void updateSubresource(Resource parent, Resource subresource, boolean delete) {
         DiffableField field = DiffableType.getInstance(parent.getClass())
             .getField(DiffableInternals.getName(subresource));
@@ -183,12 +283,77 @@ public class State {
         }
     }
 
-    public void save() {
-        NodePrinter printer = new NodePrinter();
+    /**
+     * Records the changes since the last save in the journal, and compacts
+     * the journal into the state files once it grows large enough.
+     *
+     * <p>If the backend can't append to files, the changed state files are
+     * written out directly.</p>
+     */
+    public synchronized void save() {
+        if (journal && !journalEntries.isEmpty()) {
+            appendJournal();
+        }
+
+        if (!journal || journalSize >= JOURNAL_COMPACT_SIZE) {
+            compact();
+        }
+    }
+
+    private void appendJournal() {
+        OutputStream output = root.openAppendOutput(JOURNAL_FILE);
+
+        if (output == null) {
+            journal = false;
+            return;
+        }
+
+        try (Writer out = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, JournalEntry> e : journalEntries.entrySet()) {
+                String key = e.getKey();
+                JournalEntry entry = e.getValue();
+                Map<String, Object> record = new LinkedHashMap<>();
 
+                // Keyed by the name that's printed so that the replay can
+                // find the resource in the state files after a rename.
+                record.put("key", newKeys.getOrDefault(key, key));
+                record.put("files", new ArrayList<>(entry.files));
+
+                Object resource = entry.targetFile != null
+                    ? states.get(entry.targetFile).get(key)
+                    : null;
+
+                if (resource instanceof Resource) {
+                    record.put("file", entry.targetFile);
+                    record.put("resource", NodePrinter.toString(toResourceNode((Resource) resource)));
+                }
+
+                out.write(ObjectUtils.toJson(record));
+                out.write('\n');
+                ++journalSize;
+            }
+
+        } catch (IOException error) {
+            throw new GyroException(
+                String.format("Can't append to @|bold %s|@ in @|bold %s|@!", JOURNAL_FILE, root.getBackend()),
+                error);
+        }
+
+        journalEntries.clear();
+    }
+
+    /**
+     * Writes out the state files that have been changed since the last
+     * compaction and clears the journal.
+     */
+    public synchronized void compact() {
         for (FileScope state : states.values()) {
             String file = state.getFile();
 
+            if (!dirtyFiles.contains(file)) {
+                continue;
+            }
+
             List<Resource> resources = state.values()
                 .stream()
                 .filter(Resource.class::isInstance)
@@ -204,16 +369,10 @@ public class State {
                         StandardCharsets.UTF_8))) {
 
                     PrinterContext context = new PrinterContext(out, 0);
+                    NodePrinter printer = new NodePrinter();
 
                     for (Resource resource : resources) {
-                        printer.visit(
-                            new ResourceNode(
-                                DiffableType.getInstance(resource.getClass()).getName(),
-                                new ValueNode(newNames.getOrDefault(
-                                    resource.primaryKey(),
-                                    DiffableInternals.getName(resource))),
-                                toBodyNodes(resource, resource)),
-                            context);
+                        printer.visit(toStateNode(file, resource), context);
                     }
 
                 } catch (IOException error) {
@@ -232,7 +391,241 @@ public class State {
             } else {
                 root.delete(file);
             }
+
+            dirtyFiles.remove(file);
+        }
+
+        journalEntries.clear();
+
+        if (journalSize > 0) {
+            root.delete(JOURNAL_FILE);
+            journalSize = 0;
+        }
+    }
+
+    /**
+     * Applies the changes recorded in the journal, if any, to the state
+     * files in the given {@code root} and removes the journal.
+     *
+     * <p>Only the state files named in the journal are read and rewritten.</p>
+     */
+    @SuppressWarnings("unchecked")
+    static void replayJournal(RootScope root) {
+        String journalText;
+
+        try (GyroInputStream input = root.openInput(JOURNAL_FILE)) {
+            journalText = IoUtils.toString(input, StandardCharsets.UTF_8);
+
+        } catch (GyroException error) {
+            return;
+
+        } catch (IOException error) {
+            throw new Bug(error);
+        }
+
+        Map<String, Map<String, Object>> records = new LinkedHashMap<>();
+        Set<String> files = new LinkedHashSet<>();
+
+        for (String line : journalText.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            Map<String, Object> record;
+
+            try {
+                record = (Map<String, Object>) ObjectUtils.fromJson(line);
+
+            } catch (RuntimeException error) {
+
+                // The last record is incomplete if the process died while
+                // it was being written.
+                break;
+            }
+
+            String key = (String) record.get("key");
+
+            records.remove(key);
+            records.put(key, record);
+            files.addAll((Collection<String>) record.get("files"));
+        }
+
+        Set<String> existingFiles;
+
+        try (Stream<String> s = root.list()) {
+            existingFiles = s.collect(Collectors.toSet());
+        }
+
+        for (String file : files) {
+            List<Node> body = new ArrayList<>();
+            Set<String> placed = new HashSet<>();
+
+            if (existingFiles.contains(file)) {
+                try (GyroInputStream input = root.openInput(file)) {
+                    for (Node node : ((FileNode) Node.parse(input, file, GyroParser::file)).getBody()) {
+                        String key = getResourceKey(node);
+                        Map<String, Object> record = key != null ? records.get(key) : null;
+
+                        if (record == null) {
+                            body.add(node);
+
+                        } else if (file.equals(record.get("file")) && placed.add(key)) {
+                            body.add(parseJournalResource(record));
+                        }
+                    }
+
+                } catch (IOException error) {
+                    throw new Bug(error);
+                }
+            }
+
+            for (Map.Entry<String, Map<String, Object>> entry : records.entrySet()) {
+                if (file.equals(entry.getValue().get("file")) && placed.add(entry.getKey())) {
+                    body.add(parseJournalResource(entry.getValue()));
+                }
+            }
+
+            if (body.isEmpty()) {
+                root.delete(file);
+
+            } else {
+                try (OutputStream out = root.openOutput(file)) {
+                    out.write(body.stream()
+                        .map(NodePrinter::toString)
+                        .collect(Collectors.joining())
+                        .getBytes(StandardCharsets.UTF_8));
+
+                } catch (IOException error) {
+                    throw new Bug(error);
+                }
+            }
         }
+
+        root.delete(JOURNAL_FILE);
+    }
+
+    private static String getResourceKey(Node node) {
+        if (node instanceof ResourceNode) {
+            ResourceNode resourceNode = (ResourceNode) node;
+            Node nameNode = resourceNode.getName();
+
+            if (nameNode instanceof ValueNode) {
+                return resourceNode.getType() + "::" + ((ValueNode) nameNode).getValue();
+            }
+        }
+
+        return null;
+    }
+
+    private static Node parseJournalResource(Map<String, Object> record) {
+        return ((FileNode) Node.parse((String) record.get("resource"), GyroParser::file)).getBody().get(0);
+    }
+
+    // Resources that are still shared haven't changed, so they're written
+    // out as they were read, with only the references to renamed resources
+    // rewritten. They're read from the state file again because the shared
+    // resources may have been refreshed and disconnected from the blocks
+    // they were read from.
+    private Node toStateNode(String file, Resource resource) {
+        if (shared.contains(resource)) {
+            Node node = stateNodes.computeIfAbsent(file, this::readStateNodes).get(resource.primaryKey());
+
+            if (node != null) {
+                return newNames.isEmpty() ? node : rename(node);
+            }
+        }
+
+        return toResourceNode(resource);
+    }
+
+    // Only needs to handle the nodes that toResourceNode creates.
+    private Node rename(Node node) {
+        if (node instanceof ResourceNode) {
+            ResourceNode resourceNode = (ResourceNode) node;
+            Node nameNode = resourceNode.getName();
+            String newName = newNames.get(getResourceKey(resourceNode));
+
+            return new ResourceNode(
+                resourceNode.getType(),
+                newName != null ? new ValueNode(newName) : nameNode,
+                rename(resourceNode.getBody()));
+
+        } else if (node instanceof KeyBlockNode) {
+            KeyBlockNode keyBlockNode = (KeyBlockNode) node;
+
+            return new KeyBlockNode(keyBlockNode.getKey(), keyBlockNode.getName(), rename(keyBlockNode.getBody()));
+
+        } else if (node instanceof PairNode) {
+            PairNode pairNode = (PairNode) node;
+
+            return new PairNode(pairNode.getKey(), rename(pairNode.getValue()));
+
+        } else if (node instanceof ListNode) {
+            return new ListNode(rename(((ListNode) node).getItems()));
+
+        } else if (node instanceof MapNode) {
+            return new MapNode(((MapNode) node).getEntries()
+                .stream()
+                .map(e -> (PairNode) rename(e))
+                .collect(Collectors.toList()));
+
+        } else if (node instanceof ReferenceNode) {
+            ReferenceNode referenceNode = (ReferenceNode) node;
+            List<Node> arguments = referenceNode.getArguments();
+
+            if (arguments.size() == 2
+                && arguments.get(0) instanceof ValueNode
+                && arguments.get(1) instanceof ValueNode) {
+
+                String newName = newNames.get(
+                    ((ValueNode) arguments.get(0)).getValue() + "::" + ((ValueNode) arguments.get(1)).getValue());
+
+                if (newName != null) {
+                    return new ReferenceNode(
+                        Arrays.asList(arguments.get(0), new ValueNode(newName)),
+                        referenceNode.getFilters(),
+                        referenceNode.getOptions());
+                }
+            }
+        }
+
+        return node;
+    }
+
+    private List<Node> rename(List<Node> nodes) {
+        return nodes.stream().map(this::rename).collect(Collectors.toList());
+    }
+
+    private Map<String, Node> readStateNodes(String file) {
+        Map<String, Node> nodes = new HashMap<>();
+
+        try (GyroInputStream input = root.openInput(file)) {
+            for (Node node : ((FileNode) Node.parse(input, file, GyroParser::file)).getBody()) {
+                String key = getResourceKey(node);
+
+                if (key != null) {
+                    nodes.put(key, node);
+                }
+            }
+
+        } catch (GyroException error) {
+
+            // The state file doesn't exist yet.
+
+        } catch (IOException error) {
+            throw new Bug(error);
+        }
+
+        return nodes;
+    }
+
+    private ResourceNode toResourceNode(Resource resource) {
+        return new ResourceNode(
+            DiffableType.getInstance(resource.getClass()).getName(),
+            new ValueNode(newNames.getOrDefault(
+                resource.primaryKey(),
+                DiffableInternals.getName(resource))),
+            toBodyNodes(resource, resource));
     }
 
     private List<Node> toBodyNodes(Diffable diffable, Resource resource) {
@@ -363,7 +756,7 @@ public class State {
         }
     }
 
-    public void replace(Resource resource, Resource with) {
+    public synchronized void replace(Resource resource, Resource with) {
         String resourceType = DiffableType.getInstance(resource.getClass()).getName();
         String withType = DiffableType.getInstance(with.getClass()).getName();
 
@@ -379,7 +772,18 @@ public class State {
 
         states.values().forEach(s -> s.remove(resourceKey));
         newNames.put(withKey, DiffableInternals.getName(resource));
-        save();
+        newKeys.put(withKey, resourceKey);
+
+        // Renaming changes the references in every state file.
+        dirtyFiles.addAll(states.keySet());
+        compact();
+    }
+
+    private static class JournalEntry {
+
+        public final Set<String> files = new LinkedHashSet<>();
+        public String targetFile;
+
     }
 
 }
@@ -16,12 +16,32 @@
 
 package gyro.core.scope;
 
+import java.util.Collections;
+import java.util.Set;
+
 import gyro.lang.ast.Node;
 
 class WildcardDefer extends Defer {
 
+    private final String type;
+
     public WildcardDefer(Node node, String type) {
         super(node, String.format("Can't resolve wildcard reference to @|bold %s|@ type!", type));
+
+        this.type = type;
+    }
+
+    /**
+     * Returns the dependency key that's signaled once all resources of the
+     * given {@code type} have been evaluated.
+     */
+    public static String getTypeKey(String type) {
+        return type + "::*";
+    }
+
+    @Override
+    public Set<String> getDependencies() {
+        return Collections.singleton(getTypeKey(type));
     }
 
 }
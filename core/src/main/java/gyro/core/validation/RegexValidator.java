@@ -16,13 +16,36 @@
 
 package gyro.core.validation;
 
+import java.util.regex.Pattern;
+
 public class RegexValidator extends AbstractValidator<Regex> {
 
     private static final RegexesValidator VALIDATOR = new RegexesValidator();
 
+    private final Pattern pattern;
+
+    public RegexValidator() {
+        this(null);
+    }
+
+    private RegexValidator(Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    @Override
+    public Validator<Regex> forAnnotation(Regex annotation) {
+        return new RegexValidator(Pattern.compile(annotation.value()));
+    }
+
     @Override
     protected boolean validate(Regex annotation, Object value) {
-        return value instanceof String && ((String) value).matches(annotation.value());
+        if (!(value instanceof String)) {
+            return false;
+        }
+
+        Pattern p = pattern != null ? pattern : Pattern.compile(annotation.value());
+
+        return p.matcher((String) value).matches();
     }
 
     @Override
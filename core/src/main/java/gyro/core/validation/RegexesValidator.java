@@ -16,6 +16,8 @@
 
 package gyro.core.validation;
 
+import java.util.List;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -25,9 +27,32 @@ public class RegexesValidator extends AbstractValidator<Regexes> {
 
     private static final RegexValidator VALIDATOR = new RegexValidator();
 
+    private final List<Pattern> patterns;
+
+    public RegexesValidator() {
+        this(null);
+    }
+
+    private RegexesValidator(List<Pattern> patterns) {
+        this.patterns = patterns;
+    }
+
+    @Override
+    public Validator<Regexes> forAnnotation(Regexes annotation) {
+        return new RegexesValidator(Stream.of(annotation.value())
+            .map(Regex::value)
+            .map(Pattern::compile)
+            .collect(Collectors.toList()));
+    }
+
     @Override
     protected boolean validate(Regexes annotation, Object value) {
-        return Stream.of(annotation.value()).anyMatch(a -> VALIDATOR.validate(a, value));
+        if (patterns == null) {
+            return Stream.of(annotation.value()).anyMatch(a -> VALIDATOR.validate(a, value));
+
+        } else {
+            return value instanceof String && patterns.stream().anyMatch(p -> p.matcher((String) value).matches());
+        }
     }
 
     String getMessage(Regex... annotations) {
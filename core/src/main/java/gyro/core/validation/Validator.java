@@ -26,4 +26,13 @@ public interface Validator<A extends Annotation> {
 
     String getMessage(A annotation);
 
+    /**
+     * Returns the validator to use for the given {@code annotation} on a
+     * field, which can keep what it derives from the annotation, such as a
+     * compiled pattern, for as long as the field is used.
+     */
+    default Validator<A> forAnnotation(A annotation) {
+        return this;
+    }
+
 }
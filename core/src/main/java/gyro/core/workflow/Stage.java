@@ -112,7 +112,7 @@ public class Stage {
             currentRootScope.findResourcesIn(currentRootScope.getLoadFiles()),
             pendingRootScope.findResourcesIn(pendingRootScope.getLoadFiles()));
 
-        diff.diff();
+        diff.diff(state.getParallelism());
 
         if (confirmDiff && diff.write(ui)) {
             if (ui.readBoolean(Boolean.TRUE, "\nContinue with %s stage?", name)) {
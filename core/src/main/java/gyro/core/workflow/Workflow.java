@@ -114,13 +114,6 @@ public class Workflow {
         return stage;
     }
 
-    private RootScope copyCurrentRootScope() {
-        RootScope current = root.getCurrent();
-        RootScope scope = new RootScope(current.getFile(), current.getBackend(), null, current.getLoadFiles());
-        scope.evaluate();
-        return scope;
-    }
-
     @SuppressWarnings("unchecked")
     public void execute(
         GyroUI ui,
@@ -160,12 +153,14 @@ public class Workflow {
                 ui.write("\n");
             }
 
-            RootScope currentRoot = copyCurrentRootScope();
+            // Previous stages change the state, so each stage starts from a
+            // copy of the state as it is now instead of reading it again.
+            RootScope currentRoot = state.snapshot(root.getCurrent());
 
             ui.indent();
 
             try {
-                stage.execute(ui, state, currentResource, pendingResource, currentRoot, copyCurrentRootScope());
+                stage.execute(ui, state, currentResource, pendingResource, currentRoot, currentRoot.snapshot());
                 executedStages.add(stageName);
 
                 try (GyroOutputStream output = currentRoot.openOutput(Workflow.EXECUTION_FILE)) {
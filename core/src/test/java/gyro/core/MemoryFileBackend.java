@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Keeps all files in memory.
+ */
+public class MemoryFileBackend extends FileBackend {
+
+    public final Map<String, byte[]> files = new LinkedHashMap<>();
+
+    public String read(String file) {
+        return new String(files.get(file), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Stream<String> list() {
+        return files.keySet().stream();
+    }
+
+    @Override
+    public InputStream openInput(String file) throws Exception {
+        byte[] content = files.get(file);
+
+        if (content == null) {
+            throw new FileNotFoundException(file);
+        }
+
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public OutputStream openOutput(String file) {
+        return new ByteArrayOutputStream() {
+
+            @Override
+            public void close() {
+                files.put(file, toByteArray());
+            }
+        };
+    }
+
+    @Override
+    public OutputStream openAppendOutput(String file) {
+        return new ByteArrayOutputStream() {
+
+            @Override
+            public void close() {
+                byte[] content = files.getOrDefault(file, new byte[0]);
+                byte[] appended = new byte[content.length + size()];
+
+                System.arraycopy(content, 0, appended, 0, content.length);
+                System.arraycopy(toByteArray(), 0, appended, content.length, size());
+                files.put(file, appended);
+            }
+        };
+    }
+
+    @Override
+    public void delete(String file) {
+        files.remove(file);
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.command;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import gyro.core.GyroException;
+import gyro.core.reference.ResourceReference;
+import gyro.core.resource.DiffableInternals;
+import gyro.core.resource.Resource;
+import gyro.core.resource.TestReferenceResource;
+import gyro.core.resource.TestRefreshAllResource;
+import gyro.core.resource.TestRefreshAllSubclassResource;
+import gyro.core.scope.TestResource;
+import gyro.lang.ast.Node;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AbstractConfigCommandTest {
+
+    <R extends Resource> R named(R resource, String name) {
+        DiffableInternals.setName(resource, name);
+        return resource;
+    }
+
+    @Nested
+    class ToBatches {
+
+        @Test
+        void refreshAll() {
+            Resource a = named(new TestRefreshAllResource(), "a");
+            Resource b = named(new TestRefreshAllResource(), "b");
+            Resource c = named(new TestRefreshAllResource(), "c");
+
+            assertThat(AbstractConfigCommand.toBatches(Arrays.asList(a, b, c), 2))
+                .containsExactly(Arrays.asList(a, b), Collections.singletonList(c));
+        }
+
+        @Test
+        void fallback() {
+            Resource a = new TestResource("a");
+            Resource b = new TestResource("b");
+
+            assertThat(AbstractConfigCommand.toBatches(Arrays.asList(a, b), 2))
+                .containsExactly(Collections.singletonList(a), Collections.singletonList(b));
+        }
+
+        @Test
+        void inheritedRefreshAll() {
+            Resource a = named(new TestRefreshAllSubclassResource(), "a");
+            Resource b = named(new TestRefreshAllSubclassResource(), "b");
+
+            assertThat(AbstractConfigCommand.toBatches(Arrays.asList(a, b), 2))
+                .containsExactly(Collections.singletonList(a), Collections.singletonList(b));
+        }
+
+        @Test
+        void mixed() {
+            Resource a = named(new TestRefreshAllResource(), "a");
+            Resource b = new TestResource("b");
+            Resource c = named(new TestRefreshAllResource(), "c");
+            List<List<Resource>> batches = AbstractConfigCommand.toBatches(Arrays.asList(a, b, c), 2);
+
+            assertThat(batches).containsExactly(Collections.singletonList(b), Arrays.asList(a, c));
+        }
+
+    }
+
+    @Nested
+    class FindDependencies {
+
+        TestReferenceResource loaded;
+        TestReferenceResource referenced;
+        TestResource loadedTarget;
+        TestResource referencedTarget;
+        TestResource unrelated;
+        List<Resource> allResources;
+
+        @BeforeEach
+        void beforeEach() {
+            loaded = named(new TestReferenceResource(), "loaded");
+            referenced = named(new TestReferenceResource(), "referenced");
+            loadedTarget = new TestResource("loaded-target");
+            referencedTarget = new TestResource("referenced-target");
+            unrelated = new TestResource("unrelated");
+
+            loaded.setTargets(Collections.singletonList(loadedTarget));
+            referenced.setTarget(referencedTarget);
+
+            allResources = Arrays.asList(loaded, referenced, loadedTarget, referencedTarget, unrelated);
+        }
+
+        Set<ResourceReference> find(String text) {
+            return ResourceReference.find(Collections.singletonList(Node.parse(text, GyroParser::value)));
+        }
+
+        @Test
+        void stateReferences() {
+            assertThat(AbstractConfigCommand.findDependencies(
+                Collections.singletonList(loaded),
+                Collections.emptySet(),
+                allResources))
+                .containsExactlyInAnyOrder(loaded, loadedTarget);
+        }
+
+        @Test
+        void configurationReferences() {
+            assertThat(AbstractConfigCommand.findDependencies(
+                Collections.singletonList(loaded),
+                find("$(test::reference referenced)"),
+                allResources))
+                .containsExactlyInAnyOrder(loaded, loadedTarget, referenced, referencedTarget);
+        }
+
+    }
+
+    @Nested
+    class ParseDuration {
+
+        @Test
+        void units() {
+            assertThat(AbstractConfigCommand.parseDuration("30s")).isEqualTo(TimeUnit.SECONDS.toMillis(30));
+            assertThat(AbstractConfigCommand.parseDuration("10m")).isEqualTo(TimeUnit.MINUTES.toMillis(10));
+            assertThat(AbstractConfigCommand.parseDuration("1h")).isEqualTo(TimeUnit.HOURS.toMillis(1));
+            assertThat(AbstractConfigCommand.parseDuration("2d")).isEqualTo(TimeUnit.DAYS.toMillis(2));
+        }
+
+        @Test
+        void defaultUnit() {
+            assertThat(AbstractConfigCommand.parseDuration(" 45 ")).isEqualTo(TimeUnit.SECONDS.toMillis(45));
+        }
+
+        @Test
+        void invalid() {
+            assertThatExceptionOfType(GyroException.class).isThrownBy(() -> AbstractConfigCommand.parseDuration("1w"));
+            assertThatExceptionOfType(GyroException.class).isThrownBy(() -> AbstractConfigCommand.parseDuration("m"));
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.command;
+
+import java.util.Collections;
+
+import gyro.core.MemoryFileBackend;
+import gyro.core.scope.DiffableScope;
+import gyro.core.scope.FileScope;
+import gyro.core.scope.RootScope;
+import gyro.core.scope.TestResource;
+import gyro.lang.ast.Node;
+import gyro.lang.ast.block.BlockNode;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static gyro.core.scope.TestResources.*;
+import static org.assertj.core.api.Assertions.*;
+
+class RefreshCacheTest {
+
+    RootScope root;
+    FileScope file;
+
+    @BeforeEach
+    void beforeEach() {
+        root = new RootScope("", new MemoryFileBackend(), null, null);
+        file = new FileScope(root, "test.gyro");
+    }
+
+    TestResource newStateResource(String value) {
+        BlockNode block = (BlockNode) Node.parse(
+            "test::resource foo\nvalue: '" + value + "'\nend\n",
+            GyroParser::block);
+
+        TestResource resource = newDiffable(TestResource.class, new DiffableScope(file, block), "foo");
+
+        resource.setValue(value);
+        return resource;
+    }
+
+    // Saves and loads the cache as separate runs would.
+    RefreshCache reload(RefreshCache cache, TestResource resource) {
+        cache.save(Collections.singleton(resource.primaryKey()));
+        return RefreshCache.load(root);
+    }
+
+    @Test
+    void freshWithinMaxAge() {
+        TestResource resource = newStateResource("a");
+        String hash = RefreshCache.hash(resource);
+        RefreshCache cache = RefreshCache.load(root);
+
+        cache.put(resource, hash, 1000);
+        cache = reload(cache, resource);
+
+        assertThat(cache.isFresh(resource, hash, 500, 1000)).isTrue();
+        assertThat(cache.isFresh(resource, hash, 500, 1500)).isTrue();
+    }
+
+    @Test
+    void staleAfterMaxAge() {
+        TestResource resource = newStateResource("a");
+        String hash = RefreshCache.hash(resource);
+        RefreshCache cache = RefreshCache.load(root);
+
+        cache.put(resource, hash, 1000);
+        cache = reload(cache, resource);
+
+        assertThat(cache.isFresh(resource, hash, 500, 1501)).isFalse();
+    }
+
+    @Test
+    void stateChanged() {
+        TestResource resource = newStateResource("a");
+        RefreshCache cache = RefreshCache.load(root);
+
+        cache.put(resource, RefreshCache.hash(resource), 1000);
+        cache = reload(cache, resource);
+
+        TestResource changed = newStateResource("b");
+        String changedHash = RefreshCache.hash(changed);
+
+        assertThat(changedHash).isNotEqualTo(RefreshCache.hash(resource));
+        assertThat(cache.isFresh(changed, changedHash, 500, 1000)).isFalse();
+    }
+
+    @Test
+    void refreshChangedResource() {
+        TestResource resource = newStateResource("a");
+        String hash = RefreshCache.hash(resource);
+        RefreshCache cache = RefreshCache.load(root);
+        Object snapshot = RefreshCache.snapshot(resource);
+
+        cache.put(resource, hash, 1000);
+        cache = reload(cache, resource);
+
+        // Same as a refresh that found a different value.
+        resource.setValue("b");
+
+        assertThat(RefreshCache.snapshot(resource)).isNotEqualTo(snapshot);
+
+        cache.remove(resource);
+        cache = reload(cache, resource);
+
+        assertThat(cache.isFresh(resource, hash, 500, 1000)).isFalse();
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.command;
+
+import gyro.core.FileBackend;
+import gyro.core.GyroException;
+import gyro.core.scope.RootScope;
+import gyro.lang.ast.Node;
+import gyro.lang.ast.block.DirectiveNode;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RefreshRateLimitDirectiveProcessorTest {
+
+    RefreshRateLimitDirectiveProcessor processor;
+    RootScope root;
+
+    @BeforeEach
+    void beforeEach() {
+        processor = new RefreshRateLimitDirectiveProcessor();
+        root = new RootScope("", mock(FileBackend.class), null, null);
+    }
+
+    private DirectiveNode parse(String text) {
+        return (DirectiveNode) Node.parse(text, GyroParser::directive);
+    }
+
+    private RefreshRateLimiter getLimiter(String namespace) {
+        return root.getSettings(RefreshSettings.class).getRateLimiters().get(namespace);
+    }
+
+    @Test
+    void process() {
+        processor.process(root, parse("@refresh-rate-limit: 'aws' 20 -burst 40"));
+
+        RefreshRateLimiter limiter = getLimiter("aws");
+
+        assertThat(limiter.getRate()).isEqualTo(20.0);
+        assertThat(limiter.getBurst()).isEqualTo(40.0);
+    }
+
+    @Test
+    void defaultBurst() {
+        processor.process(root, parse("@refresh-rate-limit: 'aws' 20"));
+        processor.process(root, parse("@refresh-rate-limit: 'azure' 0.5"));
+
+        assertThat(getLimiter("aws").getBurst()).isEqualTo(20.0);
+        assertThat(getLimiter("azure").getBurst()).isEqualTo(1.0);
+    }
+
+    @Test
+    void missingRate() {
+        assertThatExceptionOfType(GyroException.class)
+            .isThrownBy(() -> processor.process(root, parse("@refresh-rate-limit: 'aws'")));
+    }
+
+    @Test
+    void zeroRate() {
+        assertThatExceptionOfType(GyroException.class)
+            .isThrownBy(() -> processor.process(root, parse("@refresh-rate-limit: 'aws' 0")));
+    }
+
+    @Test
+    void smallBurst() {
+        assertThatExceptionOfType(GyroException.class)
+            .isThrownBy(() -> processor.process(root, parse("@refresh-rate-limit: 'aws' 20 -burst 0.5")));
+    }
+
+    @Test
+    void tooManyBurstArguments() {
+        assertThatExceptionOfType(GyroException.class)
+            .isThrownBy(() -> processor.process(root, parse("@refresh-rate-limit: 'aws' 20 -burst 40 50")));
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.command;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RefreshRateLimiterTest {
+
+    long now;
+    RefreshRateLimiter limiter;
+
+    @BeforeEach
+    void beforeEach() {
+        now = 0;
+        limiter = new RefreshRateLimiter(2, 4, () -> now);
+    }
+
+    @Test
+    void burst() {
+        for (int i = 0; i < 4; ++i) {
+            assertThat(limiter.reserve()).isEqualTo(0);
+        }
+
+        assertThat(limiter.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(limiter.reserve()).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    void refill() {
+        for (int i = 0; i < 4; ++i) {
+            limiter.reserve();
+        }
+
+        now = TimeUnit.SECONDS.toNanos(1);
+
+        assertThat(limiter.reserve()).isEqualTo(0);
+        assertThat(limiter.reserve()).isEqualTo(0);
+        assertThat(limiter.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    void refillUpToBurst() {
+        now = TimeUnit.MINUTES.toNanos(1);
+
+        for (int i = 0; i < 4; ++i) {
+            assertThat(limiter.reserve()).isEqualTo(0);
+        }
+
+        assertThat(limiter.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import gyro.core.FileBackend;
+import gyro.core.reference.ReferenceSettings;
+import gyro.core.resource.TestReferenceResource;
+import gyro.core.scope.DiffableScope;
+import gyro.core.scope.FileScope;
+import gyro.core.scope.RootScope;
+import gyro.core.scope.TestResource;
+import gyro.core.scope.ValueReferenceResolver;
+import gyro.lang.ast.Node;
+import gyro.lang.ast.block.BlockNode;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static gyro.core.scope.TestResources.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChangeGraphTest {
+
+    RootScope root;
+    FileScope file;
+    Diff diff;
+
+    @BeforeEach
+    void beforeEach() {
+        root = new RootScope("", mock(FileBackend.class), null, null);
+        file = newFile("test.gyro");
+        diff = new Diff(Collections.emptyList(), Collections.emptyList());
+    }
+
+    FileScope newFile(String name) {
+        FileScope scope = new FileScope(root, name);
+
+        root.getFileScopes().add(scope);
+        return scope;
+    }
+
+    TestResource newResource(FileScope file, String name, String body) {
+        BlockNode block = (BlockNode) Node.parse("test::resource " + name + "\n" + body + "\nend\n", GyroParser::block);
+
+        return newDiffable(TestResource.class, new DiffableScope(file, block), name);
+    }
+
+    Change add(Change change) {
+        diff.getChanges().add(change);
+        return change;
+    }
+
+    @Test
+    void variableReference() {
+        Change vpc = add(new Create(newResource(file, "vpc", "")));
+        Change subnet = add(new Create(newResource(file, "subnet", "vpc-id: $vpc.id")));
+
+        ChangeGraph graph = ChangeGraph.forCreateKeepUpdate(diff);
+
+        assertThat(graph.getPrerequisites(subnet)).containsExactly(vpc);
+        assertThat(graph.getPrerequisites(vpc)).isEmpty();
+    }
+
+    @Test
+    void variableReferenceOtherFile() {
+        add(new Create(newResource(newFile("other.gyro"), "vpc", "")));
+        Change subnet = add(new Create(newResource(file, "subnet", "vpc-id: $vpc.id")));
+
+        assertThat(ChangeGraph.forCreateKeepUpdate(diff).getPrerequisites(subnet)).isEmpty();
+    }
+
+    @Test
+    void resolverReference() {
+        root.getSettings(ReferenceSettings.class).addResolver(ValueReferenceResolver.class);
+        add(new Create(newResource(file, "vpc", "")));
+        Change subnet = add(new Create(newResource(file, "subnet", "vpc-id: $(value 'foo')")));
+
+        assertThat(ChangeGraph.forCreateKeepUpdate(diff).getPrerequisites(subnet)).isEmpty();
+    }
+
+    @Test
+    void variableReferenceDelete() {
+        Change vpc = add(new Delete(newResource(file, "vpc", "")));
+        Change subnet = add(new Delete(newResource(file, "subnet", "vpc-id: $vpc.id")));
+
+        ChangeGraph graph = ChangeGraph.forDelete(diff);
+
+        assertThat(graph.getPrerequisites(vpc)).containsExactly(subnet);
+        assertThat(graph.getPrerequisites(subnet)).isEmpty();
+    }
+
+    @Nested
+    class Execute {
+
+        List<Change> executed;
+
+        @BeforeEach
+        void beforeEach() {
+            executed = Collections.synchronizedList(new ArrayList<>());
+        }
+
+        void execute(ChangeGraph graph) {
+            graph.execute(4, executed::add);
+        }
+
+        @Test
+        void parentBeforeChild() {
+            Change parent = add(new Create(newResource(file, "parent", "")));
+            Diff childDiff = new Diff(Collections.emptyList(), Collections.emptyList());
+            Change child = new Create(newResource(file, "child", ""));
+
+            childDiff.getChanges().add(child);
+            parent.getDiffs().add(childDiff);
+            execute(ChangeGraph.forCreateKeepUpdate(diff));
+
+            assertThat(executed).containsExactly(parent, child);
+        }
+
+        @Test
+        void fieldReference() {
+            TestReferenceResource reference = newDiffable(TestReferenceResource.class, file, "reference");
+            TestResource target = newResource(file, "target", "");
+
+            reference.setTarget(target);
+
+            Change referenceChange = add(new Create(reference));
+            Change targetChange = add(new Create(target));
+
+            execute(ChangeGraph.forCreateKeepUpdate(diff));
+
+            assertThat(executed).containsExactly(targetChange, referenceChange);
+        }
+
+        @Test
+        void deleteInReverse() {
+            Change vpc = add(new Delete(newResource(file, "vpc", "")));
+            Change subnet = add(new Delete(newResource(file, "subnet", "vpc-id: $vpc.id")));
+
+            execute(ChangeGraph.forDelete(diff));
+
+            assertThat(executed).containsExactly(subnet, vpc);
+        }
+
+        @Test
+        void failure() {
+            Change vpc = add(new Create(newResource(file, "vpc", "")));
+            add(new Create(newResource(file, "subnet", "vpc-id: $vpc.id")));
+            ChangeGraph graph = ChangeGraph.forCreateKeepUpdate(diff);
+
+            assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> graph.execute(4, change -> {
+                    executed.add(change);
+                    throw new IllegalStateException();
+                }));
+
+            assertThat(executed).containsExactly(vpc);
+        }
+
+        @Test
+        void cycle() {
+            TestReferenceResource reference = newDiffable(TestReferenceResource.class, file, "reference");
+            TestResource target = newResource(file, "target", "value: $(test::reference reference)");
+
+            reference.setTarget(target);
+
+            Change referenceChange = add(new Create(reference));
+            Change targetChange = add(new Create(target));
+
+            execute(ChangeGraph.forCreateKeepUpdate(diff));
+
+            assertThat(executed).containsExactly(referenceChange, targetChange);
+        }
+
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import gyro.core.FileBackend;
+import gyro.core.resource.DiffableField;
+import gyro.core.resource.DiffableInternals;
+import gyro.core.scope.DiffableScope;
+import gyro.core.scope.FileScope;
+import gyro.core.scope.RootScope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static gyro.core.scope.TestResources.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DiffTest {
+
+    FileScope file;
+
+    @BeforeEach
+    void beforeEach() {
+        RootScope root = new RootScope("", mock(FileBackend.class), null, null);
+        file = new FileScope(root, "test.gyro");
+    }
+
+    TestParentResource newResource(String value, String other, String subValue) {
+        return newResource("foo", value, other, subValue);
+    }
+
+    TestParentResource newResource(String name, String value, String other, String subValue) {
+        DiffableScope scope = new DiffableScope(file, null);
+        DiffableScope subScope = new DiffableScope(scope, null);
+
+        subScope.put("value", subValue);
+        scope.put("value", value);
+        scope.put("other", other);
+        scope.put("sub", newDiffable(TestSubresource.class, subScope, "sub"));
+
+        return newDiffable(TestParentResource.class, scope, name);
+    }
+
+    Change diff(TestParentResource current, TestParentResource pending) {
+        Diff diff = new Diff(Collections.singletonList(current), Collections.singletonList(pending));
+
+        diff.diff();
+        assertThat(diff.getChanges()).hasSize(1);
+        return diff.getChanges().get(0);
+    }
+
+    Change getSubChange(Change change) {
+        assertThat(change.getDiffs()).hasSize(1);
+
+        Diff subDiff = change.getDiffs().get(0);
+
+        assertThat(subDiff.getChanges()).hasSize(1);
+        return subDiff.getChanges().get(0);
+    }
+
+    @Test
+    void nothingChanged() {
+        TestParentResource pending = newResource("a", "b", "c");
+        Change change = diff(newResource("a", "b", "c"), pending);
+        Change subChange = getSubChange(change);
+
+        assertThat(change).isInstanceOf(Keep.class);
+        assertThat(subChange).isInstanceOf(Keep.class);
+        assertThat(subChange.getDiffable()).isSameAs(pending.getSub());
+        assertThat(DiffableInternals.getChange(pending.getSub())).isSameAs(subChange);
+    }
+
+    @Test
+    void subresourceChanged() {
+        Change change = diff(newResource("a", "b", "c"), newResource("a", "b", "x"));
+
+        assertThat(change).isInstanceOf(Update.class);
+        assertThat(((Update) change).getChangedFields()).extracting(DiffableField::getName).containsExactly("sub");
+        assertThat(getSubChange(change)).isInstanceOf(Replace.class);
+    }
+
+    @Test
+    void nonDiffedFieldChanged() {
+        TestParentResource pending = newResource("a", "x", "c");
+        Change change = diff(newResource("a", "b", "c"), pending);
+        Change subChange = getSubChange(change);
+
+        assertThat(change).isInstanceOf(Update.class);
+        assertThat(((Update) change).getChangedFields()).extracting(DiffableField::getName).containsExactly("other");
+        assertThat(subChange).isInstanceOf(Keep.class);
+        assertThat(DiffableInternals.getChange(pending.getSub())).isSameAs(subChange);
+    }
+
+    List<String> diffAll(int parallelism) {
+        List<TestParentResource> current = new ArrayList<>();
+        List<TestParentResource> pending = new ArrayList<>();
+
+        // Mix of creates, deletes, updates, and keeps.
+        for (int i = 0; i < 12; ++i) {
+            String name = "foo" + i;
+
+            if (i % 4 != 0) {
+                current.add(newResource(name, "a", "b", "c"));
+            }
+
+            if (i % 4 != 1) {
+                pending.add(newResource(name, "a", i % 4 == 2 ? "x" : "b", "c"));
+            }
+        }
+
+        Diff diff = new Diff(current, pending);
+
+        diff.diff(parallelism);
+
+        return diff.getChanges()
+            .stream()
+            .map(c -> c.getClass().getSimpleName() + " " + c.getDiffable().primaryKey())
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void sameChangesInParallel() {
+        List<String> changes = diffAll(1);
+
+        assertThat(changes).hasSize(12);
+        assertThat(diffAll(4)).containsExactlyElementsOf(changes);
+    }
+
+}
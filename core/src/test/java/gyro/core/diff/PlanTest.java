@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.diff;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import gyro.core.MemoryFileBackend;
+import gyro.core.scope.FileScope;
+import gyro.core.scope.RootScope;
+import gyro.core.scope.TestResource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static gyro.core.scope.TestResources.*;
+import static org.assertj.core.api.Assertions.*;
+
+class PlanTest {
+
+    MemoryFileBackend backend;
+    RootScope root;
+
+    @BeforeEach
+    void beforeEach() {
+        backend = new MemoryFileBackend();
+        root = new RootScope("", backend, null, null);
+    }
+
+    @Nested
+    class Fingerprint {
+
+        @BeforeEach
+        void beforeEach() {
+            backend.files.put("a.gyro", "foo".getBytes(StandardCharsets.UTF_8));
+            backend.files.put("b.gyro", "bar".getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Test
+        void same() {
+            assertThat(Plan.fingerprint(root)).isEqualTo(Plan.fingerprint(root));
+        }
+
+        @Test
+        void fileOrder() {
+            String fingerprint = Plan.fingerprint(root);
+
+            backend.files.remove("a.gyro");
+            backend.files.put("a.gyro", "foo".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(Plan.fingerprint(root)).isEqualTo(fingerprint);
+        }
+
+        @Test
+        void changedContent() {
+            String fingerprint = Plan.fingerprint(root);
+
+            backend.files.put("b.gyro", "baz".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(Plan.fingerprint(root)).isNotEqualTo(fingerprint);
+        }
+
+        @Test
+        void movedContent() {
+            String fingerprint = Plan.fingerprint(root);
+
+            backend.files.put("a.gyro", "foob".getBytes(StandardCharsets.UTF_8));
+            backend.files.put("b.gyro", "ar".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(Plan.fingerprint(root)).isNotEqualTo(fingerprint);
+        }
+
+        @Test
+        void addedFile() {
+            String fingerprint = Plan.fingerprint(root);
+
+            backend.files.put("c.gyro", new byte[0]);
+
+            assertThat(Plan.fingerprint(root)).isNotEqualTo(fingerprint);
+        }
+
+    }
+
+    @Nested
+    class HasSameChanges {
+
+        FileScope file;
+
+        @BeforeEach
+        void beforeEach() {
+            file = new FileScope(root, "test.gyro");
+        }
+
+        Diff newDiff(Change... changes) {
+            Diff diff = new Diff(Collections.emptyList(), Collections.emptyList());
+
+            Collections.addAll(diff.getChanges(), changes);
+            return diff;
+        }
+
+        @Test
+        void same() {
+            TestResource foo = newResource(file, "foo");
+
+            assertThat(Plan.of(newDiff(new Create(foo)), "a").hasSameChanges(Plan.of(newDiff(new Create(foo)), "b")))
+                .isTrue();
+        }
+
+        @Test
+        void differentResource() {
+            assertThat(Plan.of(newDiff(new Create(newResource(file, "foo"))), "a")
+                .hasSameChanges(Plan.of(newDiff(new Create(newResource(file, "bar"))), "a")))
+                .isFalse();
+        }
+
+        @Test
+        void differentChange() {
+            TestResource foo = newResource(file, "foo");
+
+            assertThat(Plan.of(newDiff(new Create(foo)), "a").hasSameChanges(Plan.of(newDiff(new Delete(foo)), "a")))
+                .isFalse();
+        }
+
+        @Test
+        void keep() {
+            TestResource foo = newResource(file, "foo");
+
+            assertThat(Plan.of(newDiff(new Keep(foo)), "a").hasSameChanges(Plan.of(newDiff(), "a"))).isTrue();
+        }
+
+        @Test
+        void readWrite() throws Exception {
+            Plan plan = Plan.of(newDiff(new Create(newResource(file, "foo"))), "a");
+            Path planFile = Files.createTempFile("plan", ".json");
+
+            try {
+                plan.write(planFile);
+
+                Plan read = Plan.read(planFile);
+
+                assertThat(read.getState()).isEqualTo("a");
+                assertThat(read.hasSameChanges(plan)).isTrue();
+
+            } finally {
+                Files.delete(planFile);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.reference;
+
+import java.util.Collections;
+import java.util.Set;
+
+import gyro.core.scope.TestResource;
+import gyro.lang.ast.Node;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ResourceReferenceTest {
+
+    private Set<ResourceReference> find(String text) {
+        return ResourceReference.find(Collections.singletonList(Node.parse(text, GyroParser::value)));
+    }
+
+    @Test
+    void findNone() {
+        assertThat(find("$(foo)")).isEmpty();
+    }
+
+    @Test
+    void findName() {
+        Set<ResourceReference> references = find("$(test::resource foo)");
+
+        assertThat(references).hasSize(1);
+        assertThat(references.iterator().next().getName()).isEqualTo("foo");
+        assertThat(references.iterator().next().isWildcard()).isFalse();
+    }
+
+    @Test
+    void findNested() {
+        assertThat(find("[$(test::resource foo), { bar: $(test::resource bar) }]")).hasSize(2);
+    }
+
+    @Test
+    void matches() {
+        ResourceReference reference = find("$(test::resource foo)").iterator().next();
+
+        assertThat(reference.matches(new TestResource("foo"))).isTrue();
+        assertThat(reference.matches(new TestResource("foobar"))).isFalse();
+    }
+
+    @Test
+    void matchesWildcard() {
+        ResourceReference reference = find("$(test::resource foo*)").iterator().next();
+
+        assertThat(reference.matches(new TestResource("foobar"))).isTrue();
+        assertThat(reference.matches(new TestResource("bar"))).isFalse();
+    }
+
+}
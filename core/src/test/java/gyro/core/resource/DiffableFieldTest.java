@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.resource;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+
+import com.google.common.base.CaseFormat;
+import gyro.core.MemoryFileBackend;
+import gyro.core.scope.RootScope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static gyro.core.scope.TestResources.*;
+import static org.assertj.core.api.Assertions.*;
+
+class DiffableFieldTest {
+
+    DiffableType<TestFieldDiffable> type;
+    TestFieldDiffable diffable;
+
+    @BeforeEach
+    void beforeEach() {
+        type = DiffableType.getInstance(TestFieldDiffable.class);
+        diffable = newDiffable(TestFieldDiffable.class, new RootScope("", new MemoryFileBackend(), null, null), "test");
+    }
+
+    @Test
+    void getValue() throws Exception {
+        diffable.setLabel("foo");
+        diffable.setMaxCount(3);
+        diffable.setEnabled(true);
+
+        for (PropertyDescriptor prop : Introspector.getBeanInfo(TestFieldDiffable.class).getPropertyDescriptors()) {
+            DiffableField field = type.getField(CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_HYPHEN, prop.getName()));
+
+            if (field != null) {
+                assertThat(field.getValue(diffable)).isEqualTo(prop.getReadMethod().invoke(diffable));
+            }
+        }
+
+        assertThat(type.getField("label").getValue(diffable)).isEqualTo("foo");
+        assertThat(type.getField("max-count").getValue(diffable)).isEqualTo(3);
+        assertThat(type.getField("enabled").getValue(diffable)).isEqualTo(true);
+    }
+
+    @Test
+    void setValue() {
+        type.getField("label").setValue(diffable, "bar");
+        type.getField("max-count").setValue(diffable, 5L);
+        type.getField("enabled").setValue(diffable, "true");
+
+        assertThat(diffable.getLabel()).isEqualTo("bar");
+        assertThat(diffable.getMaxCount()).isEqualTo(5);
+        assertThat(diffable.isEnabled()).isTrue();
+    }
+
+    public static class TestBaseDiffable extends Diffable {
+
+        private String label;
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String primaryKey() {
+            return "test";
+        }
+
+    }
+
+    public static class TestFieldDiffable extends TestBaseDiffable {
+
+        private int maxCount;
+        private boolean enabled;
+
+        public int getMaxCount() {
+            return maxCount;
+        }
+
+        public void setMaxCount(int maxCount) {
+            this.maxCount = maxCount;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+    }
+
+}
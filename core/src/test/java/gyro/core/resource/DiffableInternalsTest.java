@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.resource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import gyro.core.MemoryFileBackend;
+import gyro.core.diff.TestParentResource;
+import gyro.core.diff.TestSubresource;
+import gyro.core.scope.FileScope;
+import gyro.core.scope.RootScope;
+import gyro.core.scope.TestResource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static gyro.core.scope.TestResources.*;
+import static org.assertj.core.api.Assertions.*;
+
+class DiffableInternalsTest {
+
+    RootScope root;
+    FileScope file;
+    FileScope copyFile;
+    Map<Diffable, Diffable> copies;
+
+    @BeforeEach
+    void beforeEach() {
+        root = new RootScope("", new MemoryFileBackend(), null, null);
+        file = new FileScope(root, "test.gyro");
+        copyFile = new FileScope(root, "test.gyro");
+        copies = new IdentityHashMap<>();
+    }
+
+    @Nested
+    class Snapshot {
+
+        TestParentResource parent;
+        TestSubresource sub;
+
+        @BeforeEach
+        void beforeEach() {
+            parent = newDiffable(TestParentResource.class, file, "parent");
+            sub = newDiffable(TestSubresource.class, DiffableInternals.getScope(parent), "sub");
+
+            parent.setValue("value");
+            sub.setValue("value");
+            parent.setSub(sub);
+            DiffableInternals.update(parent);
+        }
+
+        @Test
+        void copies() {
+            TestParentResource copy = DiffableInternals.snapshot(parent, copyFile, copies);
+
+            assertThat(copy).isNotSameAs(parent);
+            assertThat(DiffableInternals.getName(copy)).isEqualTo("parent");
+            assertThat(copy.getValue()).isEqualTo("value");
+            assertThat(copy.getSub()).isNotSameAs(sub);
+            assertThat(copy.getSub().getValue()).isEqualTo("value");
+            assertThat(DiffableInternals.getScope(copy).getParent()).isSameAs(copyFile);
+            assertThat(copies).containsEntry(parent, copy).containsEntry(sub, copy.getSub());
+        }
+
+        @Test
+        void isolated() {
+            TestParentResource copy = DiffableInternals.snapshot(parent, copyFile, copies);
+
+            parent.setValue("changed");
+            sub.setValue("changed");
+            parent.setSub(null);
+
+            assertThat(copy.getValue()).isEqualTo("value");
+            assertThat(copy.getSub()).isNotNull();
+            assertThat(copy.getSub().getValue()).isEqualTo("value");
+        }
+
+    }
+
+    @Nested
+    class ReplaceReferences {
+
+        TestResource target;
+        TestResource other;
+        TestReferenceResource reference;
+
+        @BeforeEach
+        void beforeEach() {
+            target = newDiffable(TestResource.class, file, "target");
+            other = newDiffable(TestResource.class, file, "other");
+            reference = newDiffable(TestReferenceResource.class, file, "reference");
+
+            reference.setTarget(target);
+            reference.setTargets(new ArrayList<>(Arrays.asList(target, other)));
+        }
+
+        @Test
+        void copied() {
+            TestResource targetCopy = DiffableInternals.snapshot(target, copyFile, copies);
+            TestReferenceResource referenceCopy = DiffableInternals.snapshot(reference, copyFile, copies);
+
+            DiffableInternals.replaceReferences(copies);
+
+            assertThat(referenceCopy.getTarget()).isSameAs(targetCopy);
+            assertThat(referenceCopy.getTargets()).containsExactly(targetCopy, other);
+            assertThat(reference.getTarget()).isSameAs(target);
+            assertThat(reference.getTargets()).containsExactly(target, other);
+        }
+
+        @Test
+        void notCopied() {
+            TestReferenceResource referenceCopy = DiffableInternals.snapshot(reference, copyFile, copies);
+
+            DiffableInternals.replaceReferences(copies);
+
+            assertThat(referenceCopy.getTarget()).isSameAs(target);
+            assertThat(referenceCopy.getTargets()).containsExactly(target, other);
+        }
+
+    }
+
+}
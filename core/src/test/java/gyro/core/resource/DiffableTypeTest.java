@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.resource;
+
+import java.util.Arrays;
+
+import gyro.core.scope.TestResource;
+import gyro.util.Bug;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DiffableTypeTest {
+
+    @Nested
+    class RefreshAll {
+
+        @Test
+        void declared() {
+            assertThat(DiffableType.getInstance(TestRefreshAllResource.class).isRefreshAllSupported()).isTrue();
+        }
+
+        @Test
+        void none() {
+            assertThat(DiffableType.getInstance(TestResource.class).isRefreshAllSupported()).isFalse();
+        }
+
+        @Test
+        void inherited() {
+            assertThat(DiffableType.getInstance(TestRefreshAllSubclassResource.class).isRefreshAllSupported())
+                .isFalse();
+        }
+
+        @Test
+        void refreshAll() {
+            TestRefreshAllResource foo = new TestRefreshAllResource();
+            TestRefreshAllResource deleted = new TestRefreshAllResource();
+
+            DiffableInternals.setName(foo, "foo");
+            DiffableInternals.setName(deleted, "deleted");
+
+            assertThat(DiffableType.getInstance(TestRefreshAllResource.class).refreshAll(Arrays.asList(foo, deleted)))
+                .containsExactly(foo);
+        }
+
+        @Test
+        void refreshAllUnsupported() {
+            assertThatExceptionOfType(Bug.class)
+                .isThrownBy(() -> DiffableType.getInstance(TestResource.class).refreshAll(Arrays.asList()));
+        }
+
+    }
+
+    @Nested
+    class Modify {
+
+        @Test
+        void fields() {
+            DiffableType<TestModifiedResource> type = DiffableType.getInstance(TestModifiedResource.class);
+            DiffableField value = type.getField("value");
+
+            assertThat(type.getField("extra")).isNull();
+
+            type.modify(TestModification.class);
+
+            DiffableField extra = type.getField("extra");
+
+            assertThat(extra).isInstanceOf(ModificationField.class);
+            assertThat(type.getFields()).contains(value, extra);
+            assertThat(type.getField("value")).isSameAs(value);
+        }
+
+    }
+
+    public static class TestModifiedResource extends TestResource {
+
+    }
+
+    public static class TestModification extends Modification<TestModifiedResource> {
+
+        private String extra;
+        private String value;
+
+        public String getExtra() {
+            return extra;
+        }
+
+        public void setExtra(String extra) {
+            this.extra = extra;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String primaryKey() {
+            return "test-modification";
+        }
+
+    }
+
+}
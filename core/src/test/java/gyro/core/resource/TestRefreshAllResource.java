@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.resource;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import gyro.core.GyroUI;
+import gyro.core.Namespace;
+import gyro.core.Type;
+import gyro.core.scope.State;
+
+@Namespace("test")
+@Type("refresh-all")
+public class TestRefreshAllResource extends Resource {
+
+    public static List<TestRefreshAllResource> refreshAll(List<TestRefreshAllResource> resources) {
+        return resources.stream()
+            .filter(r -> !DiffableInternals.getName(r).startsWith("deleted"))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean refresh() {
+        return false;
+    }
+
+    @Override
+    public void create(GyroUI ui, State state) {
+    }
+
+    @Override
+    public void update(GyroUI ui, State state, Resource current, Set<String> changedFieldNames) {
+    }
+
+    @Override
+    public void delete(GyroUI ui, State state) {
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import gyro.core.FileBackend;
+import gyro.core.GyroUI;
+import gyro.lang.ast.Node;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DeferSchedulerTest {
+
+    @Nested
+    class Execute {
+
+        List<String> visited;
+        Set<String> defined;
+
+        @BeforeEach
+        void beforeEach() {
+            visited = new ArrayList<>();
+            defined = new HashSet<>();
+        }
+
+        void visit(String item, Defer defer) {
+            visited.add(item);
+
+            if (item.equals("a")) {
+                if (!defined.contains("b")) {
+                    throw defer;
+                }
+
+            } else {
+                defined.add(item);
+                DeferScheduler.signal("test::resource::" + item);
+            }
+        }
+
+        @Test
+        void signaled() {
+            DeferScheduler.execute(Arrays.asList("a", "b", "c"), i -> visit(i, new FindDefer(null, "test::resource", "b")));
+
+            assertThat(visited).containsExactly("a", "b", "c", "a");
+        }
+
+        @Test
+        void unknownDependencies() {
+            DeferScheduler.execute(Arrays.asList("a", "b", "c"), i -> visit(i, new Defer(null, "a")));
+
+            assertThat(visited).containsExactly("a", "b", "c", "a");
+        }
+
+        @Test
+        void noProgress() {
+            assertThatExceptionOfType(ExecuteDefer.class)
+                .isThrownBy(() -> DeferScheduler.execute(
+                    Arrays.asList("a", "a"),
+                    i -> visit(i, new FindDefer(null, "test::resource", "b"))));
+
+            assertThat(visited).containsExactly("a", "a");
+        }
+
+    }
+
+    @Nested
+    class Evaluate {
+
+        RootScope root;
+
+        @BeforeEach
+        void beforeEach() {
+            root = new RootScope("", mock(FileBackend.class), null, null);
+
+            root.put("test::resource", TestResource.class);
+        }
+
+        Node parse(String file, String text) throws IOException {
+            return Node.parse(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)),
+                file,
+                GyroParser::file);
+        }
+
+        void evaluate(Node... files) {
+            root.getEvaluator().evaluate(root, new ArrayList<>(Arrays.asList(files)));
+        }
+
+        Defer evaluateWithError(Node... files) {
+            try {
+                evaluate(files);
+
+            } catch (Defer error) {
+                return error;
+            }
+
+            throw new AssertionError("Expected a Defer!");
+        }
+
+        TestResource findResource(String name) {
+            return (TestResource) root.findResource("test::resource::" + name);
+        }
+
+        FileScope findFileScope(String file) {
+            return root.getFileScopes()
+                .stream()
+                .filter(f -> f.getFile().equals(file))
+                .findFirst()
+                .orElse(null);
+        }
+
+        @Test
+        void forwardReferencesAcrossFiles() throws IOException {
+            evaluate(
+                parse("a.gyro", "test::resource a\n    value: $(test::resource b).value\nend\n"),
+                parse("b.gyro", "test::resource b\n    value: $(test::resource c).value\nend\n"),
+                parse("c.gyro", "test::resource c\n    value: 'c'\nend\n"));
+
+            assertThat(findResource("a").getValue()).isEqualTo("c");
+            assertThat(findResource("b").getValue()).isEqualTo("c");
+        }
+
+        @Test
+        void forwardReferencesInFile() throws IOException {
+            evaluate(parse(
+                "a.gyro",
+                "test::resource a\n    value: $(test::resource b).value\nend\n"
+                    + "test::resource b\n    value: $c\nend\n"
+                    + "c: 'c'\n"));
+
+            assertThat(findResource("a").getValue()).isEqualTo("c");
+        }
+
+        @Test
+        void wildcardAfterLaterDefinitions() throws IOException {
+            evaluate(
+                parse("a.gyro", "all: $(test::resource *)\n"),
+                parse("b.gyro", "test::resource b1\nend\ntest::resource b2\nend\n"));
+
+            assertThat(findFileScope("a.gyro").get("all")).asList().hasSize(2);
+        }
+
+        @Test
+        void neverResolves() throws IOException {
+            Defer error = evaluateWithError(
+                parse("a.gyro", "test::resource a\n    value: $(test::resource missing).value\nend\n"));
+
+            GyroUI ui = mock(GyroUI.class);
+
+            error.write(ui);
+
+            assertThat(error).isInstanceOf(ExecuteDefer.class);
+            assertThat(error.getDependencies()).containsExactly("test::resource::missing");
+            verify(ui).write("@|red Error:|@ %s\n", "Can't create @|bold test::resource|@ @|bold a|@ resource!");
+            verify(ui).write("@|red Error:|@ %s\n", "Can't find @|bold missing|@ resource of @|bold test::resource|@ type!");
+        }
+
+        @Test
+        void dependent() throws IOException {
+            Defer error = evaluateWithError(
+                parse("a.gyro", "test::resource a\n    value: $(test::resource b).value\nend\n"),
+                parse("b.gyro", "test::resource b\n    value: $(test::resource missing).value\nend\n"));
+
+            GyroUI ui = mock(GyroUI.class);
+
+            error.write(ui);
+
+            verify(ui).write("@|red Error:|@ %s\n", "Can't create @|bold test::resource|@ @|bold b|@ resource!");
+            verify(ui).write("\n@|red Related:|@\n");
+        }
+
+        @Test
+        void circular() throws IOException {
+            Defer error = evaluateWithError(
+                parse("a.gyro", "test::resource a\n    value: $(test::resource b).value\nend\n"),
+                parse("b.gyro", "test::resource b\n    value: $(test::resource a).value\nend\n"));
+
+            GyroUI ui = mock(GyroUI.class);
+
+            error.write(ui);
+
+            verify(ui).write("@|red Circular dependency detected!|@\n");
+        }
+
+    }
+
+}
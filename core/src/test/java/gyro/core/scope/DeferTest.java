@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DeferTest {
+
+    @Test
+    void noStackTrace() {
+        Defer defer = new Defer(null, "foo");
+
+        assertThat(defer.getStackTrace()).isEmpty();
+
+        defer.fillInStackTrace();
+
+        assertThat(defer.getStackTrace()).isEmpty();
+    }
+
+    @Test
+    void noSuppressed() {
+        Defer defer = new Defer(null, "foo");
+
+        defer.addSuppressed(new Defer(null, "bar"));
+
+        assertThat(defer.getSuppressed()).isEmpty();
+    }
+
+    @Test
+    void cause() {
+        Defer cause = new Defer(null, "bar");
+        Defer defer = new Defer(null, "foo", cause);
+
+        assertThat(defer.getMessage()).isEqualTo("foo");
+        assertThat(defer.getCause()).isSameAs(cause);
+    }
+
+}
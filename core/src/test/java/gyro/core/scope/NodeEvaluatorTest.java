@@ -16,9 +16,13 @@
 
 package gyro.core.scope;
 
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 
+import com.google.common.base.CaseFormat;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import gyro.core.FileBackend;
@@ -73,6 +77,31 @@ class NodeEvaluatorTest {
                 assertThat(NodeEvaluator.getValue(null, ImmutableList.of("foo", "bar"), "size")).isEqualTo(2);
             }
 
+            @Test
+            void properties() throws Exception {
+                TestBean bean = new TestBean();
+
+                bean.setLabel("foo");
+                bean.setMaxCount(3);
+                bean.setEnabled(true);
+
+                for (PropertyDescriptor prop : Introspector.getBeanInfo(TestBean.class).getPropertyDescriptors()) {
+                    String key = CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_HYPHEN, prop.getName());
+
+                    assertThat(NodeEvaluator.getValue(null, bean, key)).isEqualTo(prop.getReadMethod().invoke(bean));
+                }
+
+                assertThat(NodeEvaluator.getValue(null, bean, "label")).isEqualTo("foo");
+                assertThat(NodeEvaluator.getValue(null, bean, "max-count")).isEqualTo(3);
+                assertThat(NodeEvaluator.getValue(null, bean, "enabled")).isEqualTo(true);
+            }
+
+            @Test
+            void propertyMissing() {
+                assertThatExceptionOfType(GyroException.class)
+                    .isThrownBy(() -> NodeEvaluator.getValue(null, new TestBean(), "missing"));
+            }
+
         }
 
     }
@@ -91,6 +120,68 @@ class NodeEvaluatorTest {
             scope = new Scope(root);
         }
 
+        @Nested
+        class TypeNodesTest {
+
+            @BeforeEach
+            void beforeEach() {
+                evaluator.evaluate(root, new ArrayList<>());
+            }
+
+            private Node parse(String text) {
+                return Node.parse(text, GyroParser::block);
+            }
+
+            @Test
+            void remove() {
+                Node foo = parse("test::resource foo\nend\n");
+                Node bar = parse("test::resource bar\nend\n");
+                Node qux = parse("test::other qux\nend\n");
+
+                evaluator.addTypeNode(foo, foo);
+                evaluator.addTypeNode(bar, bar);
+                evaluator.addTypeNode(qux, qux);
+                evaluator.removeTypeNode(foo);
+
+                assertThat(evaluator.hasTypeNodes("test::resource")).isTrue();
+                assertThat(evaluator.hasTypeNodes("test::other")).isTrue();
+
+                evaluator.removeTypeNode(bar);
+
+                assertThat(evaluator.hasTypeNodes("test::resource")).isFalse();
+                assertThat(evaluator.hasTypeNodes("test::other")).isTrue();
+            }
+
+            @Test
+            void removeUnknown() {
+                Node foo = parse("test::resource foo\nend\n");
+
+                evaluator.addTypeNode(foo, foo);
+                evaluator.removeTypeNode(parse("test::resource foo\nend\n"));
+
+                assertThat(evaluator.hasTypeNodes("test::resource")).isTrue();
+            }
+
+            @Test
+            void removeTop() {
+                Node top = parse("test::resource foo\nend\n");
+                Node other = parse("test::other qux\nend\n");
+
+                // Types of nested nodes are tracked by the top node.
+                evaluator.addTypeNode(top, top);
+                evaluator.addTypeNode(top, other);
+                evaluator.removeTypeNode(other);
+
+                assertThat(evaluator.hasTypeNodes("test::other")).isTrue();
+
+                evaluator.removeTypeNode(top);
+
+                assertThat(evaluator.hasTypeNodes("test::resource")).isFalse();
+                assertThat(evaluator.hasTypeNodes("test::other")).isFalse();
+            }
+
+        }
+
         @Nested
         class ReferenceTest {
 
@@ -249,4 +340,41 @@ class NodeEvaluatorTest {
 
     }
 
-}
\ No newline at end of file
+    public static class TestBaseBean {
+
+        private String label;
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+    }
+
+    public static class TestBean extends TestBaseBean {
+
+        private int maxCount;
+        private boolean enabled;
+
+        public int getMaxCount() {
+            return maxCount;
+        }
+
+        public void setMaxCount(int maxCount) {
+            this.maxCount = maxCount;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+    }
+
+}
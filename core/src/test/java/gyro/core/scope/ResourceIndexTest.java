@@ -0,0 +1,235 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import gyro.core.MemoryFileBackend;
+import gyro.core.Namespace;
+import gyro.core.Type;
+import gyro.core.resource.DiffableInternals;
+import gyro.core.resource.Id;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static gyro.core.scope.TestResources.*;
+import static org.assertj.core.api.Assertions.*;
+
+class ResourceIndexTest {
+
+    RootScope root;
+    FileScope file;
+    FileScope otherFile;
+
+    @BeforeEach
+    void beforeEach() {
+        root = new RootScope("", new MemoryFileBackend(), null, null);
+        file = new FileScope(root, "test.gyro");
+        otherFile = new FileScope(root, "other.gyro");
+
+        root.getFileScopes().add(file);
+        root.getFileScopes().add(otherFile);
+    }
+
+    void put(FileScope scope, TestResource resource) {
+        scope.put(resource.primaryKey(), resource);
+    }
+
+    @Test
+    void put() {
+        TestResource foo = newResource(file, "foo");
+
+        put(file, foo);
+
+        assertThat(root.findResource("test::resource::foo")).isSameAs(foo);
+        assertThat(root.findResources()).containsExactly(foo);
+        assertThat(root.findResourcesByClass(TestResource.class)).containsExactly(foo);
+        assertThat(root.findResourcesByPrefix("test::resource", "f")).containsExactly(foo);
+    }
+
+    @Test
+    void putAgain() {
+        TestResource foo = newResource(file, "foo");
+        TestResource bar = newResource(file, "bar");
+        TestResource newFoo = newResource(file, "foo");
+
+        put(file, foo);
+        put(file, bar);
+        put(file, newFoo);
+
+        assertThat(root.findResource("test::resource::foo")).isSameAs(newFoo);
+        assertThat(root.findResources()).containsExactly(newFoo, bar);
+        assertThat(root.findResourcesByClass(TestResource.class)).containsExactly(newFoo, bar);
+    }
+
+    @Test
+    void putAll() {
+        TestResource foo = newResource(file, "foo");
+        TestResource bar = newResource(file, "bar");
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        values.put(foo.primaryKey(), foo);
+        values.put("value", "foo");
+        values.put(bar.primaryKey(), bar);
+        file.putAll(values);
+
+        assertThat(root.findResources()).containsExactly(foo, bar);
+    }
+
+    @Test
+    void remove() {
+        TestResource foo = newResource(file, "foo");
+
+        put(file, foo);
+        file.remove(foo.primaryKey());
+
+        assertThat(root.findResource("test::resource::foo")).isNull();
+        assertThat(root.findResources()).isEmpty();
+        assertThat(root.findResourcesByClass(TestResource.class)).isEmpty();
+        assertThat(root.findResourcesByPrefix("test::resource", "f")).isEmpty();
+    }
+
+    @Test
+    void clear() {
+        put(file, newResource(file, "foo"));
+        put(file, newResource(file, "bar"));
+        file.clear();
+
+        assertThat(root.findResource("test::resource::foo")).isNull();
+        assertThat(root.findResources()).isEmpty();
+    }
+
+    @Test
+    void removeFileScope() {
+        put(file, newResource(file, "foo"));
+        root.getFileScopes().remove(file);
+
+        assertThat(root.findResource("test::resource::foo")).isNull();
+        assertThat(root.findResources()).isEmpty();
+    }
+
+    @Test
+    void findByPrefixInDefinitionOrder() {
+        TestResource webB = newResource(file, "web-b");
+        TestResource webA = newResource(file, "web-a");
+        TestResource webC = newResource(otherFile, "web-c");
+        TestResource db = newResource(file, "db");
+
+        put(file, webB);
+        put(file, db);
+        put(otherFile, webC);
+        put(file, webA);
+
+        assertThat(root.findResourcesByPrefix("test::resource", "web-")).containsExactly(webB, webC, webA);
+        assertThat(root.findResourcesByPrefix("test::resource", "")).containsExactly(webB, db, webC, webA);
+    }
+
+    @Test
+    void sameKeyInFileScopes() {
+        TestResource foo = newResource(file, "foo");
+        TestResource otherFoo = newResource(otherFile, "foo");
+
+        put(otherFile, otherFoo);
+        put(file, foo);
+
+        assertThat(root.findResource("test::resource::foo")).isSameAs(foo);
+        assertThat(root.findResourcesByPrefix("test::resource", "f")).containsExactly(foo, otherFoo);
+
+        file.remove(foo.primaryKey());
+
+        assertThat(root.findResource("test::resource::foo")).isSameAs(otherFoo);
+        assertThat(root.findResourcesByPrefix("test::resource", "f")).containsExactly(otherFoo);
+    }
+
+    @Test
+    void findById() {
+        IdResource foo = newIdResource("foo", "id-foo");
+        IdResource bar = newIdResource("bar", "id-bar");
+
+        put(file, foo);
+        put(otherFile, bar);
+
+        assertThat(root.findResourceById(IdResource.class, "id-foo")).isSameAs(foo);
+        assertThat(root.findResourceById(IdResource.class, "id-bar")).isSameAs(bar);
+    }
+
+    @Test
+    void findByIdAssignedAfterPut() {
+        IdResource foo = newIdResource("foo", null);
+
+        put(file, foo);
+
+        assertThat(root.findResourceById(IdResource.class, "id-foo")).isNotSameAs(foo);
+
+        foo.setValue("id-foo");
+
+        assertThat(root.findResourceById(IdResource.class, "id-foo")).isSameAs(foo);
+    }
+
+    @Test
+    void findByIdChangedAndPutAgain() {
+        IdResource foo = newIdResource("foo", "id-old");
+
+        put(file, foo);
+        foo.setValue("id-new");
+        put(file, foo);
+
+        assertThat(root.findResourceById(IdResource.class, "id-new")).isSameAs(foo);
+        assertThat(root.findResourceById(IdResource.class, "id-old")).isNotSameAs(foo);
+    }
+
+    @Test
+    void findByIdAfterRemove() {
+        IdResource foo = newIdResource("foo", "id-foo");
+
+        put(file, foo);
+        file.remove(foo.primaryKey());
+
+        assertThat(root.findResourceById(IdResource.class, "id-foo")).isNotSameAs(foo);
+    }
+
+    @Test
+    void findByIdAfterRename() {
+        IdResource foo = newIdResource("foo", "id-foo");
+
+        put(file, foo);
+        DiffableInternals.setName(foo, "bar");
+
+        assertThat(root.findResourceById(IdResource.class, "id-foo")).isNotSameAs(foo);
+    }
+
+    IdResource newIdResource(String name, String id) {
+        IdResource resource = newDiffable(IdResource.class, file, name);
+
+        resource.setValue(id);
+        return resource;
+    }
+
+    @Namespace("test")
+    @Type("id-resource")
+    public static class IdResource extends TestResource {
+
+        @Id
+        @Override
+        public String getValue() {
+            return super.getValue();
+        }
+
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import gyro.core.GyroCore;
+import gyro.core.GyroUI;
+import gyro.core.MemoryFileBackend;
+import gyro.core.command.HighlanderSettings;
+import gyro.core.resource.Resource;
+import gyro.core.validation.ValidationError;
+import gyro.lang.ast.Node;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static gyro.core.scope.TestResources.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RootScopeTest {
+
+    MemoryFileBackend backend;
+
+    @BeforeEach
+    void beforeEach() {
+        backend = new MemoryFileBackend();
+    }
+
+    @Nested
+    class Load {
+
+        @BeforeEach
+        void beforeEach() {
+            backend.files.put("init.gyro", "@highlander: true\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Test
+        void independentSettings() {
+            RootScope root1 = new RootScope("init.gyro", backend, null, null);
+            RootScope root2 = new RootScope("init.gyro", backend, null, null);
+
+            root1.load();
+            root2.load();
+
+            HighlanderSettings settings1 = root1.getSettings(HighlanderSettings.class);
+            HighlanderSettings settings2 = root2.getSettings(HighlanderSettings.class);
+
+            assertThat(settings1).isNotSameAs(settings2);
+            assertThat(settings2.isHighlander()).isTrue();
+
+            settings1.setHighlander(false);
+
+            assertThat(settings2.isHighlander()).isTrue();
+        }
+
+        @Test
+        void otherBackend() {
+            MemoryFileBackend other = new MemoryFileBackend();
+            RootScope root1 = new RootScope("init.gyro", backend, null, null);
+            RootScope root2 = new RootScope("init.gyro", other, null, null);
+
+            other.files.put("init.gyro", "@highlander: false\n".getBytes(StandardCharsets.UTF_8));
+            root1.load();
+            root2.load();
+
+            assertThat(root1.getSettings(HighlanderSettings.class).isHighlander()).isTrue();
+            assertThat(root2.getSettings(HighlanderSettings.class).isHighlander()).isFalse();
+        }
+
+        @Test
+        void returnsNodes() {
+            RootScope root1 = new RootScope("init.gyro", backend, null, null);
+            RootScope root2 = new RootScope("init.gyro", backend, null, null);
+            List<Node> nodes1 = root1.load();
+            List<Node> nodes2 = root2.load();
+
+            assertThat(nodes1).hasSize(1);
+            assertThat(nodes2).containsExactlyElementsOf(nodes1);
+        }
+
+    }
+
+    @Nested
+    class Evaluate {
+
+        @Test
+        void fileOrder() {
+            List<String> files = new ArrayList<>();
+
+            // Listed out of name order so that the order can only come from
+            // the backend.
+            for (int i = 0; i < 20; ++i) {
+                String file = String.format("%02d.gyro", (i * 7) % 20);
+
+                files.add(file);
+                backend.files.put(file, ("index: '" + i + "'\n").getBytes(StandardCharsets.UTF_8));
+            }
+
+            RootScope root = new RootScope("", backend, null, null);
+
+            root.evaluate();
+
+            assertThat(root.getFileScopes().stream().map(FileScope::getFile).collect(Collectors.toList()))
+                .containsExactlyElementsOf(files);
+
+            for (int i = 0; i < 20; ++i) {
+                assertThat(root.getFileScopes().get(i).get("index")).isEqualTo(String.valueOf(i));
+            }
+        }
+
+    }
+
+    @Nested
+    class ValidateResources {
+
+        @Test
+        void parallel() throws Exception {
+            RootScope root = new RootScope("", backend, null, null);
+            List<Resource> resources = new ArrayList<>();
+
+            // Later resources take less time to validate so that they tend
+            // to finish first.
+            for (int i = 0; i < 8; ++i) {
+                resources.add(newDiffable(TestValidatedResource.class, root, "r" + i));
+                ((TestValidatedResource) resources.get(i)).delay = 8 - i;
+            }
+
+            GyroUI ui = mock(GyroUI.class);
+            Thread thread = Thread.currentThread();
+            ClassLoader oldLoader = thread.getContextClassLoader();
+            List<ValidationError> errors;
+
+            try (URLClassLoader loader = new URLClassLoader(new URL[0], oldLoader)) {
+                GyroCore.pushUi(ui);
+                thread.setContextClassLoader(loader);
+
+                try {
+                    errors = root.validateResources(resources, 4);
+
+                } finally {
+                    thread.setContextClassLoader(oldLoader);
+                    GyroCore.popUi();
+                }
+
+                for (Resource resource : resources) {
+                    assertThat(((TestValidatedResource) resource).ui).isSameAs(ui);
+                    assertThat(((TestValidatedResource) resource).loader).isSameAs(loader);
+                }
+            }
+
+            assertThat(errors).containsExactlyElementsOf(resources.stream()
+                .map(r -> ((TestValidatedResource) r).error)
+                .collect(Collectors.toList()));
+        }
+
+    }
+
+    public static class TestValidatedResource extends TestResource {
+
+        int delay;
+        ValidationError error;
+        GyroUI ui;
+        ClassLoader loader;
+
+        @Override
+        public List<ValidationError> validate(Set<String> configuredFields) {
+            try {
+                Thread.sleep(delay);
+
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+
+            ui = GyroCore.ui();
+            loader = Thread.currentThread().getContextClassLoader();
+            error = new ValidationError(this, null, "error");
+
+            return Collections.singletonList(error);
+        }
+
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import java.nio.charset.StandardCharsets;
+
+import gyro.core.MemoryFileBackend;
+import gyro.core.diff.Create;
+import gyro.core.diff.Delete;
+import gyro.core.resource.DiffableInternals;
+import gyro.core.resource.TestReferenceResource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static gyro.core.scope.TestResources.*;
+import static org.assertj.core.api.Assertions.*;
+
+class StateTest {
+
+    MemoryFileBackend backend;
+    RootScope current;
+    RootScope pending;
+    FileScope file;
+
+    @BeforeEach
+    void beforeEach() {
+        backend = new MemoryFileBackend();
+        current = new RootScope("", backend, null, null);
+        pending = new RootScope("", backend, null, null);
+        file = new FileScope(pending, "test.gyro");
+
+        pending.getFileScopes().add(file);
+    }
+
+    @Test
+    void saveWritesOnlyDirtyFiles() {
+        FileScope otherFile = new FileScope(pending, "other.gyro");
+
+        pending.getFileScopes().add(otherFile);
+
+        State state = new State(current, pending, false);
+
+        state.update(new Create(newResource(file, "foo")));
+        state.update(new Create(newResource(otherFile, "bar")));
+        state.save();
+        state.compact();
+
+        backend.files.put("other.gyro", "unchanged".getBytes(StandardCharsets.UTF_8));
+        state.update(new Create(newResource(file, "foo", "changed")));
+        state.save();
+        state.compact();
+
+        assertThat(backend.read("other.gyro")).isEqualTo("unchanged");
+        assertThat(backend.read("test.gyro")).contains("changed");
+    }
+
+    @Test
+    void compactKeepsRefreshedResources() {
+        State state = new State(current, pending, false);
+        TestResource foo = newResource(file, "foo", "original");
+        TestResource bar = newResource(file, "bar", "original");
+
+        state.update(new Create(foo));
+        state.update(new Create(bar));
+        state.save();
+        state.compact();
+
+        FileScope currentFile = new FileScope(current, "test.gyro");
+
+        currentFile.put(foo.primaryKey(), foo);
+        currentFile.put(bar.primaryKey(), bar);
+        current.getFileScopes().add(currentFile);
+
+        // Same as a refresh that found a different value.
+        foo.setValue("refreshed");
+        DiffableInternals.disconnect(foo);
+
+        state = new State(current, pending, false);
+
+        state.update(new Create(newResource(file, "bar", "changed")));
+        state.save();
+        state.compact();
+
+        assertThat(backend.read("test.gyro"))
+            .doesNotContain("refreshed")
+            .containsOnlyOnce("test::resource 'foo'")
+            .containsOnlyOnce("changed");
+    }
+
+    @Test
+    void replaceKeepsUnchangedResources() {
+        backend.files.put("test.gyro", String.join("\n",
+            "test::resource bar",
+            "    value: 'new'",
+            "end",
+            "",
+            "test::reference other",
+            "    @uses-credentials: 'extra'",
+            "    target: $(test::resource bar)",
+            "end",
+            "",
+            "test::resource foo",
+            "    value: 'old'",
+            "end",
+            "").getBytes(StandardCharsets.UTF_8));
+
+        TestResource bar = newResource(file, "bar", "new");
+        TestReferenceResource other = newDiffable(TestReferenceResource.class, file, "other");
+        TestResource foo = newResource(file, "foo", "old");
+        FileScope currentFile = new FileScope(current, "test.gyro");
+
+        other.setTarget(bar);
+        currentFile.put(bar.primaryKey(), bar);
+        currentFile.put(other.primaryKey(), other);
+        currentFile.put(foo.primaryKey(), foo);
+        current.getFileScopes().add(currentFile);
+
+        // Same as a refresh that found a different value.
+        other.setTarget(foo);
+        DiffableInternals.disconnect(other);
+
+        new State(current, pending, false).replace(foo, bar);
+
+        assertThat(backend.read("test.gyro"))
+            .doesNotContain("bar")
+            .doesNotContain("'old'")
+            .containsOnlyOnce("test::resource 'foo'")
+            .containsOnlyOnce("'new'")
+            .containsOnlyOnce("@uses-credentials")
+            .containsPattern("\\$\\(\\S+ 'foo'\\)");
+    }
+
+    @Test
+    void replayJournal() {
+        State state = new State(current, pending, false);
+        TestResource foo = newResource(file, "foo");
+
+        state.update(new Create(foo));
+        state.update(new Create(newResource(file, "bar")));
+        state.save();
+        state.compact();
+        state.update(new Delete(foo));
+        state.save();
+
+        assertThat(backend.files).containsKey(State.JOURNAL_FILE);
+
+        State.replayJournal(new RootScope("", backend, null, null));
+
+        assertThat(backend.files).containsOnlyKeys("test.gyro");
+        assertThat(backend.read("test.gyro")).doesNotContain("foo").containsOnlyOnce("test::resource 'bar'");
+    }
+
+    @Test
+    void replayJournalNewFile() {
+        State state = new State(current, pending, false);
+
+        state.update(new Create(newResource(file, "foo")));
+        state.save();
+
+        assertThat(backend.files).containsOnlyKeys(State.JOURNAL_FILE);
+
+        State.replayJournal(new RootScope("", backend, null, null));
+
+        assertThat(backend.files).containsOnlyKeys("test.gyro");
+        assertThat(backend.read("test.gyro")).containsOnlyOnce("test::resource 'foo'");
+    }
+
+    @Test
+    void replayJournalAfterReplace() {
+        State state = new State(current, pending, false);
+        TestResource foo = newResource(file, "foo");
+        TestResource bar = newResource(file, "bar");
+
+        state.update(new Create(foo));
+        state.save();
+        state.compact();
+        state.update(new Create(bar));
+        state.replace(foo, bar);
+        state.update(new Create(bar));
+        state.save();
+
+        assertThat(backend.files).containsKey(State.JOURNAL_FILE);
+
+        State.replayJournal(new RootScope("", backend, null, null));
+
+        assertThat(backend.files).containsOnlyKeys("test.gyro");
+        assertThat(backend.read("test.gyro")).doesNotContain("bar").containsOnlyOnce("test::resource 'foo'");
+    }
+
+}
@@ -28,10 +28,23 @@ import gyro.core.resource.Resource;
 @Type("resource")
 public class TestResource extends Resource {
 
+    private String value;
+
+    public TestResource() {
+    }
+
     public TestResource(String name) {
         DiffableInternals.setName(this, name);
     }
 
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
     @Override
     public boolean refresh() {
         return false;
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.scope;
+
+import gyro.core.resource.Diffable;
+import gyro.core.resource.DiffableType;
+
+/**
+ * Creates diffables for tests the same way the evaluator does, but without
+ * any configuration.
+ */
+public final class TestResources {
+
+    private TestResources() {
+    }
+
+    /**
+     * @param scope Values in it are set on the new diffable.
+     */
+    public static <D extends Diffable> D newDiffable(Class<D> diffableClass, DiffableScope scope, String name) {
+        return DiffableType.getInstance(diffableClass).newInternal(scope, name);
+    }
+
+    public static <D extends Diffable> D newDiffable(Class<D> diffableClass, Scope parent, String name) {
+        return newDiffable(diffableClass, new DiffableScope(parent, null), name);
+    }
+
+    public static TestResource newResource(Scope parent, String name) {
+        return newDiffable(TestResource.class, parent, name);
+    }
+
+    public static TestResource newResource(Scope parent, String name, String value) {
+        TestResource resource = newResource(parent, name);
+
+        resource.setValue(value);
+        return resource;
+    }
+
+}
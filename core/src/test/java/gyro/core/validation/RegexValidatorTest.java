@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.core.validation;
+
+import java.lang.annotation.Annotation;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RegexValidatorTest {
+
+    @Regex("[a-z]+")
+    String getLetters() {
+        return null;
+    }
+
+    @Regex("[")
+    String getInvalid() {
+        return null;
+    }
+
+    @Regex("[a-z]+")
+    @Regex("[0-9]+")
+    String getLettersOrDigits() {
+        return null;
+    }
+
+    <A extends Annotation> A getAnnotation(String method, Class<A> annotationClass) throws NoSuchMethodException {
+        return getClass().getDeclaredMethod(method).getAnnotation(annotationClass);
+    }
+
+    @Test
+    void forAnnotation() throws NoSuchMethodException {
+        Regex regex = getAnnotation("getLetters", Regex.class);
+        Validator<Regex> validator = new RegexValidator().forAnnotation(regex);
+
+        assertThat(validator.isValid(null, regex, "abc")).isTrue();
+        assertThat(validator.isValid(null, regex, "123")).isFalse();
+    }
+
+    @Test
+    void forAnnotationInvalid() throws NoSuchMethodException {
+        Regex regex = getAnnotation("getInvalid", Regex.class);
+
+        assertThatExceptionOfType(PatternSyntaxException.class)
+            .isThrownBy(() -> new RegexValidator().forAnnotation(regex));
+    }
+
+    @Test
+    void regexes() throws NoSuchMethodException {
+        Regexes regexes = getAnnotation("getLettersOrDigits", Regexes.class);
+        Validator<Regexes> validator = new RegexesValidator().forAnnotation(regexes);
+
+        assertThat(validator.isValid(null, regexes, "abc")).isTrue();
+        assertThat(validator.isValid(null, regexes, "123")).isTrue();
+        assertThat(validator.isValid(null, regexes, "abc123")).isFalse();
+    }
+
+    @Test
+    void withoutAnnotation() throws NoSuchMethodException {
+        Regexes regexes = getAnnotation("getLettersOrDigits", Regexes.class);
+        Validator<Regexes> validator = new RegexesValidator();
+
+        assertThat(validator.isValid(null, regexes, "abc")).isTrue();
+        assertThat(validator.isValid(null, regexes, "abc123")).isFalse();
+        assertThat(validator.isValid(null, regexes, 123)).isFalse();
+    }
+
+}
@@ -0,0 +1,619 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.lang.ast;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gyro.lang.GyroCharStream;
+import gyro.lang.ast.block.DirectiveNode;
+import gyro.lang.ast.block.DirectiveSection;
+import gyro.lang.ast.block.FileNode;
+import gyro.lang.ast.block.KeyBlockNode;
+import gyro.lang.ast.block.ResourceNode;
+import gyro.lang.ast.value.BinaryNode;
+import gyro.lang.ast.value.IndexedNode;
+import gyro.lang.ast.value.InterpolatedStringNode;
+import gyro.lang.ast.value.ListNode;
+import gyro.lang.ast.value.MapNode;
+import gyro.lang.ast.value.Option;
+import gyro.lang.ast.value.ReferenceNode;
+import gyro.lang.ast.value.ValueNode;
+import gyro.lang.filter.AbstractCompoundFilter;
+import gyro.lang.filter.AndFilter;
+import gyro.lang.filter.ComparisonFilter;
+import gyro.lang.filter.Filter;
+import gyro.lang.filter.OrFilter;
+import gyro.parser.antlr4.GyroLexer;
+import gyro.util.Bug;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * Compact binary form of a parsed {@link Node} tree, so that unchanged
+ * files can be loaded without running the parser.
+ *
+ * <p>Token positions are kept so that nodes read back still produce the
+ * same locations and code snippets in error messages.</p>
+ */
+public class NodeSerializer {
+
+    /**
+     * Bumped whenever the binary layout or the node classes change.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x4759524F;
+
+    private static final int NULL_TAG = 0;
+    private static final int DIRECTIVE_TAG = 1;
+    private static final int PAIR_TAG = 2;
+    private static final int FILE_TAG = 3;
+    private static final int KEY_BLOCK_TAG = 4;
+    private static final int RESOURCE_TAG = 5;
+    private static final int BINARY_TAG = 6;
+    private static final int INDEXED_TAG = 7;
+    private static final int INTERPOLATED_STRING_TAG = 8;
+    private static final int LIST_TAG = 9;
+    private static final int MAP_TAG = 10;
+    private static final int REFERENCE_TAG = 11;
+    private static final int VALUE_TAG = 12;
+
+    private static final int STRING_VALUE = 0;
+    private static final int BOOLEAN_VALUE = 1;
+    private static final int LONG_VALUE = 2;
+    private static final int DOUBLE_VALUE = 3;
+
+    private static final int AND_FILTER = 0;
+    private static final int OR_FILTER = 1;
+    private static final int COMPARISON_FILTER = 2;
+
+    public static void write(Node node, OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(output);
+
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        new Writer().writeNode(node, data);
+        data.flush();
+    }
+
+    /**
+     * Reads a node tree written by {@link #write} and attaches its locations
+     * to the given {@code stream}, which must contain the same source text
+     * that was originally parsed.
+     */
+    public static Node read(InputStream input, GyroCharStream stream) throws IOException {
+        DataInputStream data = new DataInputStream(input);
+
+        if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a serialized node tree or an incompatible format version!");
+        }
+
+        return new Reader(stream).readNode(data);
+    }
+
+    private static void writeInt(DataOutput output, int value) throws IOException {
+        int zigzag = (value << 1) ^ (value >> 31);
+
+        while ((zigzag & ~0x7F) != 0) {
+            output.writeByte((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+
+        output.writeByte(zigzag);
+    }
+
+    private static int readInt(DataInput input) throws IOException {
+        int zigzag = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 28) {
+                throw new IOException("Malformed integer!");
+            }
+
+            int b = input.readUnsignedByte();
+            zigzag |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        writeInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        byte[] bytes = new byte[readInt(input)];
+
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Writer implements NodeVisitor<DataOutput, Void, IOException> {
+
+        private final Map<Token, Integer> tokens = new IdentityHashMap<>();
+
+        public void writeNode(Node node, DataOutput output) throws IOException {
+            if (node == null) {
+                writeInt(output, NULL_TAG);
+
+            } else {
+                visit(node, output);
+            }
+        }
+
+        private void writeNodes(List<? extends Node> nodes, DataOutput output) throws IOException {
+            writeInt(output, nodes.size());
+
+            for (Node node : nodes) {
+                writeNode(node, output);
+            }
+        }
+
+        // Each distinct token is written once and referred to by its index
+        // afterwards, since parent and child nodes often share tokens.
+        private void writeToken(Token token, DataOutput output) throws IOException {
+            if (token == null) {
+                writeInt(output, 0);
+                return;
+            }
+
+            Integer index = tokens.get(token);
+
+            if (index != null) {
+                writeInt(output, index + 1);
+                return;
+            }
+
+            index = tokens.size();
+
+            tokens.put(token, index);
+            writeInt(output, index + 1);
+            writeInt(output, token.getType());
+            writeInt(output, token.getLine());
+            writeInt(output, token.getCharPositionInLine());
+            writeInt(output, token.getStartIndex());
+            writeInt(output, token.getStopIndex());
+        }
+
+        private void writeRule(Rule rule, DataOutput output) throws IOException {
+            writeToken(rule.start, output);
+            writeToken(rule.stop, output);
+        }
+
+        private void writeHeader(int tag, Rule rule, DataOutput output) throws IOException {
+            writeInt(output, tag);
+            writeRule(rule, output);
+        }
+
+        private void writeOptions(List<Option> options, DataOutput output) throws IOException {
+            writeInt(output, options.size());
+
+            for (Option option : options) {
+                writeRule(option, output);
+                writeString(output, option.getName());
+                writeNodes(option.getArguments(), output);
+            }
+        }
+
+        private void writeFilter(Filter filter, DataOutput output) throws IOException {
+            if (filter instanceof ComparisonFilter) {
+                ComparisonFilter comparison = (ComparisonFilter) filter;
+
+                writeInt(output, COMPARISON_FILTER);
+                writeString(output, comparison.getOperator());
+                writeString(output, comparison.getKey());
+                writeNode(comparison.getValue(), output);
+
+            } else if (filter instanceof AndFilter || filter instanceof OrFilter) {
+                List<Filter> children = ((AbstractCompoundFilter) filter).getChildren();
+
+                writeInt(output, filter instanceof AndFilter ? AND_FILTER : OR_FILTER);
+                writeInt(output, children.size());
+
+                for (Filter child : children) {
+                    writeFilter(child, output);
+                }
+
+            } else {
+                throw new Bug(String.format(
+                    "Can't serialize @|bold %s|@ filter!",
+                    filter.getClass().getName()));
+            }
+        }
+
+        @Override
+        public Void visitDirective(DirectiveNode node, DataOutput output) throws IOException {
+            writeHeader(DIRECTIVE_TAG, node, output);
+            writeString(output, node.getName());
+            writeNodes(node.getArguments(), output);
+            writeOptions(node.getOptions(), output);
+            writeNodes(node.getBody(), output);
+
+            List<DirectiveSection> sections = node.getSections();
+
+            writeInt(output, sections.size());
+
+            for (DirectiveSection section : sections) {
+                writeRule(section, output);
+                writeString(output, section.getName());
+                writeNodes(section.getArguments(), output);
+                writeNodes(section.getBody(), output);
+            }
+
+            return null;
+        }
+
+        @Override
+        public Void visitPair(PairNode node, DataOutput output) throws IOException {
+            writeHeader(PAIR_TAG, node, output);
+            writeNode(node.getKey(), output);
+            writeNode(node.getValue(), output);
+            return null;
+        }
+
+        @Override
+        public Void visitFile(FileNode node, DataOutput output) throws IOException {
+            writeHeader(FILE_TAG, node, output);
+            writeNodes(node.getBody(), output);
+            return null;
+        }
+
+        @Override
+        public Void visitKeyBlock(KeyBlockNode node, DataOutput output) throws IOException {
+            writeHeader(KEY_BLOCK_TAG, node, output);
+            writeString(output, node.getKey());
+            writeNode(node.getName(), output);
+            writeNodes(node.getBody(), output);
+            return null;
+        }
+
+        @Override
+        public Void visitResource(ResourceNode node, DataOutput output) throws IOException {
+            writeHeader(RESOURCE_TAG, node, output);
+            writeString(output, node.getType());
+            writeNode(node.getName(), output);
+            writeNodes(node.getBody(), output);
+            return null;
+        }
+
+        @Override
+        public Void visitBinary(BinaryNode node, DataOutput output) throws IOException {
+            writeHeader(BINARY_TAG, node, output);
+            writeString(output, node.getOperator());
+            writeNode(node.getLeft(), output);
+            writeNode(node.getRight(), output);
+            return null;
+        }
+
+        @Override
+        public Void visitIndexed(IndexedNode node, DataOutput output) throws IOException {
+            writeHeader(INDEXED_TAG, node, output);
+            writeNode(node.getValue(), output);
+            writeNodes(node.getIndexes(), output);
+            return null;
+        }
+
+        @Override
+        public Void visitInterpolatedString(InterpolatedStringNode node, DataOutput output) throws IOException {
+            writeHeader(INTERPOLATED_STRING_TAG, node, output);
+            writeNodes(node.getItems(), output);
+            return null;
+        }
+
+        @Override
+        public Void visitList(ListNode node, DataOutput output) throws IOException {
+            writeHeader(LIST_TAG, node, output);
+            writeNodes(node.getItems(), output);
+            return null;
+        }
+
+        @Override
+        public Void visitMap(MapNode node, DataOutput output) throws IOException {
+            writeHeader(MAP_TAG, node, output);
+            writeNodes(node.getEntries(), output);
+            return null;
+        }
+
+        @Override
+        public Void visitReference(ReferenceNode node, DataOutput output) throws IOException {
+            List<Filter> filters = node.getFilters();
+
+            writeHeader(REFERENCE_TAG, node, output);
+            writeNodes(node.getArguments(), output);
+            writeOptions(node.getOptions(), output);
+            writeInt(output, filters.size());
+
+            for (Filter filter : filters) {
+                writeFilter(filter, output);
+            }
+
+            return null;
+        }
+
+        @Override
+        public Void visitValue(ValueNode node, DataOutput output) throws IOException {
+            Object value = node.getValue();
+
+            writeHeader(VALUE_TAG, node, output);
+
+            if (value instanceof String) {
+                writeInt(output, STRING_VALUE);
+                writeString(output, (String) value);
+
+            } else if (value instanceof Boolean) {
+                writeInt(output, BOOLEAN_VALUE);
+                output.writeBoolean((Boolean) value);
+
+            } else if (value instanceof Long) {
+                writeInt(output, LONG_VALUE);
+                output.writeLong((Long) value);
+
+            } else if (value instanceof Double) {
+                writeInt(output, DOUBLE_VALUE);
+                output.writeDouble((Double) value);
+
+            } else {
+                throw new Bug(String.format(
+                    "Can't serialize @|bold %s|@ value!",
+                    value.getClass().getName()));
+            }
+
+            return null;
+        }
+
+    }
+
+    private static class Reader {
+
+        private final Pair<TokenSource, CharStream> source;
+        private final List<Token> tokens = new ArrayList<>();
+
+        public Reader(GyroCharStream stream) {
+            // The lexer is never run. It only serves as the token source
+            // that Rule#getStream uses to get back to the stream.
+            this.source = new Pair<>(new GyroLexer(stream), stream);
+        }
+
+        public Node readNode(DataInput input) throws IOException {
+            int tag = readInt(input);
+
+            if (tag == NULL_TAG) {
+                return null;
+            }
+
+            Token start = readToken(input);
+            Token stop = readToken(input);
+
+            switch (tag) {
+                case DIRECTIVE_TAG:
+                    DirectiveNode directive = new DirectiveNode(
+                        readString(input),
+                        readNodes(input),
+                        readOptions(input),
+                        readNodes(input),
+                        readSections(input));
+
+                    return withTokens(directive, start, stop);
+
+                case PAIR_TAG:
+                    return withTokens(new PairNode(readNode(input), readNode(input)), start, stop);
+
+                case FILE_TAG:
+                    return withTokens(new FileNode(readNodes(input)), start, stop);
+
+                case KEY_BLOCK_TAG:
+                    return withTokens(
+                        new KeyBlockNode(readString(input), readNode(input), readNodes(input)),
+                        start,
+                        stop);
+
+                case RESOURCE_TAG:
+                    return withTokens(
+                        new ResourceNode(readString(input), readNode(input), readNodes(input)),
+                        start,
+                        stop);
+
+                case BINARY_TAG:
+                    return withTokens(new BinaryNode(readString(input), readNode(input), readNode(input)), start, stop);
+
+                case INDEXED_TAG:
+                    return withTokens(new IndexedNode(readNode(input), readNodes(input)), start, stop);
+
+                case INTERPOLATED_STRING_TAG:
+                    return withTokens(new InterpolatedStringNode(readNodes(input)), start, stop);
+
+                case LIST_TAG:
+                    return withTokens(new ListNode(readNodes(input)), start, stop);
+
+                case MAP_TAG:
+                    return withTokens(new MapNode(readPairs(input)), start, stop);
+
+                case REFERENCE_TAG:
+                    List<Node> arguments = readNodes(input);
+                    List<Option> options = readOptions(input);
+
+                    return withTokens(new ReferenceNode(arguments, readFilters(input), options), start, stop);
+
+                case VALUE_TAG:
+                    return withTokens(new ValueNode(readValue(input)), start, stop);
+
+                default:
+                    throw new IOException(String.format("Unknown node tag [%s]!", tag));
+            }
+        }
+
+        private <R extends Rule> R withTokens(R rule, Token start, Token stop) {
+            rule.setTokens(start, stop);
+            return rule;
+        }
+
+        private List<Node> readNodes(DataInput input) throws IOException {
+            int size = readInt(input);
+            List<Node> nodes = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                nodes.add(readNode(input));
+            }
+
+            return nodes;
+        }
+
+        private List<PairNode> readPairs(DataInput input) throws IOException {
+            List<PairNode> pairs = new ArrayList<>();
+
+            for (Node node : readNodes(input)) {
+                if (!(node instanceof PairNode)) {
+                    throw new IOException("Map entry isn't a pair!");
+                }
+
+                pairs.add((PairNode) node);
+            }
+
+            return pairs;
+        }
+
+        private Token readToken(DataInput input) throws IOException {
+            int reference = readInt(input);
+
+            if (reference == 0) {
+                return null;
+
+            } else if (reference <= tokens.size()) {
+                return tokens.get(reference - 1);
+
+            } else if (reference != tokens.size() + 1) {
+                throw new IOException(String.format("Unknown token reference [%s]!", reference));
+            }
+
+            int type = readInt(input);
+            int line = readInt(input);
+            int column = readInt(input);
+            int startIndex = readInt(input);
+            int stopIndex = readInt(input);
+            CommonToken token = new CommonToken(source, type, Token.DEFAULT_CHANNEL, startIndex, stopIndex);
+
+            token.setLine(line);
+            token.setCharPositionInLine(column);
+            tokens.add(token);
+            return token;
+        }
+
+        private List<Option> readOptions(DataInput input) throws IOException {
+            int size = readInt(input);
+            List<Option> options = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                Token start = readToken(input);
+                Token stop = readToken(input);
+
+                options.add(withTokens(new Option(readString(input), readNodes(input)), start, stop));
+            }
+
+            return options;
+        }
+
+        private List<DirectiveSection> readSections(DataInput input) throws IOException {
+            int size = readInt(input);
+            List<DirectiveSection> sections = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                Token start = readToken(input);
+                Token stop = readToken(input);
+
+                String name = readString(input);
+                List<Node> arguments = readNodes(input);
+
+                sections.add(withTokens(new DirectiveSection(name, arguments, readNodes(input)), start, stop));
+            }
+
+            return sections;
+        }
+
+        private List<Filter> readFilters(DataInput input) throws IOException {
+            int size = readInt(input);
+            List<Filter> filters = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                filters.add(readFilter(input));
+            }
+
+            return filters;
+        }
+
+        private Filter readFilter(DataInput input) throws IOException {
+            int tag = readInt(input);
+
+            switch (tag) {
+                case AND_FILTER:
+                    return new AndFilter(readFilters(input));
+
+                case OR_FILTER:
+                    return new OrFilter(readFilters(input));
+
+                case COMPARISON_FILTER:
+                    return new ComparisonFilter(readString(input), readString(input), readNode(input));
+
+                default:
+                    throw new IOException(String.format("Unknown filter tag [%s]!", tag));
+            }
+        }
+
+        private Object readValue(DataInput input) throws IOException {
+            int tag = readInt(input);
+
+            switch (tag) {
+                case STRING_VALUE:
+                    return readString(input);
+
+                case BOOLEAN_VALUE:
+                    return input.readBoolean();
+
+                case LONG_VALUE:
+                    return input.readLong();
+
+                case DOUBLE_VALUE:
+                    return input.readDouble();
+
+                default:
+                    throw new IOException(String.format("Unknown value tag [%s]!", tag));
+            }
+        }
+
+    }
+
+}
@@ -23,8 +23,8 @@ import org.antlr.v4.runtime.Token;
 
 public abstract class Rule implements Locatable {
 
-    protected final Token start;
-    protected final Token stop;
+    protected Token start;
+    protected Token stop;
 
     public Rule(Token start, Token stop) {
         this.start = start;
@@ -42,6 +42,13 @@ public abstract class Rule implements Locatable {
         }
     }
 
+    // Only used by NodeSerializer to restore the positions of the nodes
+    // that it reads back.
+    void setTokens(Token start, Token stop) {
+        this.start = start;
+        this.stop = stop;
+    }
+
     @Override
     public GyroCharStream getStream() {
         return start != null ? (GyroCharStream) start.getTokenSource().getInputStream() : null;
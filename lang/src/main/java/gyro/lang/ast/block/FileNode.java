@@ -16,6 +16,8 @@
 
 package gyro.lang.ast.block;
 
+import java.util.List;
+
 import com.google.common.base.Preconditions;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.NodeVisitor;
@@ -27,6 +29,10 @@ public class FileNode extends BlockNode {
         super(Preconditions.checkNotNull(context), Node.create(context.statement()));
     }
 
+    public FileNode(List<Node> body) {
+        super(null, body);
+    }
+
     @Override
     public <C, R, X extends Throwable> R accept(NodeVisitor<C, R, X> visitor, C context) throws X {
         return visitor.visitFile(this, context);
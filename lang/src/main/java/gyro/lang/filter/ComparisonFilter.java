@@ -16,6 +16,7 @@
 
 package gyro.lang.filter;
 
+import com.google.common.base.Preconditions;
 import gyro.lang.ast.Node;
 import gyro.parser.antlr4.GyroParser;
 
@@ -34,6 +35,12 @@ public class ComparisonFilter extends Filter {
         this.value = Node.create(context.value());
     }
 
+    public ComparisonFilter(String operator, String key, Node value) {
+        this.operator = Preconditions.checkNotNull(operator);
+        this.key = Preconditions.checkNotNull(key);
+        this.value = Preconditions.checkNotNull(value);
+    }
+
     public String getOperator() {
         return operator;
     }
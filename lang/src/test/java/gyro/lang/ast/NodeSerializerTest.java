@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019, Perfect Sense, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gyro.lang.ast;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import gyro.lang.GyroCharStream;
+import gyro.lang.ast.block.FileNode;
+import gyro.lang.ast.block.ResourceNode;
+import gyro.lang.ast.value.ValueNode;
+import gyro.parser.antlr4.GyroParser;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class NodeSerializerTest {
+
+    private static final String TEXT = String.join(
+        "\n",
+        "@foo: 'bar' -baz 1",
+        "",
+        "@for x -in [1, 2]",
+        "    qux: $x",
+        "@end",
+        "",
+        "aws::instance web",
+        "    name: \"web-$(env)\"",
+        "    count: 1 + 2 * 3",
+        "    tags: {",
+        "        Name: 'web'",
+        "    }",
+        "    list: [true, 1.5, -2]",
+        "    ref: $(aws::vpc vpc | cidr = '10.0.0.0/16' and name != 'x').id",
+        "    nested",
+        "        key: 'value'",
+        "    end",
+        "end");
+
+    private Node writeAndRead(Node node) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        NodeSerializer.write(node, output);
+        return NodeSerializer.read(new ByteArrayInputStream(output.toByteArray()), new GyroCharStream(TEXT));
+    }
+
+    @Test
+    void read() throws IOException {
+        Node node = Node.parse(TEXT, GyroParser::file);
+        Node read = writeAndRead(node);
+
+        assertThat(read).isInstanceOf(FileNode.class);
+        assertThat(read.toString()).isEqualTo(node.toString());
+    }
+
+    @Test
+    void readLocations() throws IOException {
+        FileNode node = (FileNode) Node.parse(TEXT, GyroParser::file);
+        FileNode read = (FileNode) writeAndRead(node);
+        List<Node> body = node.getBody();
+        List<Node> readBody = read.getBody();
+
+        assertThat(readBody).hasSameSizeAs(body);
+
+        for (int i = 0; i < body.size(); i++) {
+            assertThat(readBody.get(i).toLocation()).isEqualTo(body.get(i).toLocation());
+            assertThat(readBody.get(i).toCodeSnippet()).isEqualTo(body.get(i).toCodeSnippet());
+        }
+
+        Node pair = ((ResourceNode) body.get(2)).getBody().get(4);
+        Node readPair = ((ResourceNode) readBody.get(2)).getBody().get(4);
+
+        assertThat(readPair.toCodeSnippet()).isEqualTo(pair.toCodeSnippet());
+    }
+
+    @Test
+    void readWithoutTokens() throws IOException {
+        PairNode pair = new PairNode(new ValueNode("foo"), new ValueNode("bar"));
+        FileNode node = new FileNode(Collections.singletonList(pair));
+        FileNode read = (FileNode) writeAndRead(node);
+
+        assertThat(read.toString()).isEqualTo(node.toString());
+        assertThat(read.getStartLine()).isEqualTo(-1);
+        assertThat(read.getBody().get(0).getStartLine()).isEqualTo(-1);
+    }
+
+    @Test
+    void readInvalid() {
+        assertThatIOException().isThrownBy(() -> NodeSerializer.read(
+            new ByteArrayInputStream(new byte[8]),
+            new GyroCharStream(TEXT)));
+    }
+
+}
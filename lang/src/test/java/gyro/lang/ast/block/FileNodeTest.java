@@ -16,11 +16,13 @@
 
 package gyro.lang.ast.block;
 
+import java.util.Collections;
 import java.util.List;
 
 import gyro.lang.ast.AbstractNodeTest;
 import gyro.lang.ast.Node;
 import gyro.lang.ast.PairNode;
+import gyro.lang.ast.value.ValueNode;
 import gyro.parser.antlr4.GyroParser;
 import org.junit.jupiter.api.Test;
 
@@ -38,4 +40,13 @@ class FileNodeTest extends AbstractNodeTest<FileNode> {
         assertThat(body.get(1)).isInstanceOf(PairNode.class);
     }
 
-}
\ No newline at end of file
+    @Test
+    void constructorBody() {
+        PairNode pair = new PairNode(new ValueNode("foo"), new ValueNode("bar"));
+        FileNode node = new FileNode(Collections.singletonList(pair));
+
+        assertThat(node.getBody()).containsExactly(pair);
+        assertThat(node.getStartLine()).isEqualTo(-1);
+    }
+
+}